@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.application.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Watches the JavaFX application thread from a separate thread and records stalls.
+ * <p>The watchdog posts a heartbeat to the application thread. If the heartbeat is not handled within the threshold,
+ * the application thread is stalled: the watchdog takes a stack sample and attributes the stall to the view controller
+ * callback currently running, e.g. <code>viewDidLoad</code>, <code>viewWillAppear</code> or a completion passed to
+ * present or dismiss. Stalls are aggregated per controller class and callback into a histogram of stall durations.</p>
+ */
+public class FxThreadWatchdog {
+
+    private static final Logger LOGGER = Logger.getLogger(FxThreadWatchdog.class.getName());
+    private static final int[] BUCKET_FACTORS = {2, 4, 8, 16, 32};
+    private static final String UNKNOWN_CALLBACK = "(unknown)";
+    private static final String NONE = "(none)";
+
+    private static volatile FxThreadWatchdog active;
+
+    private final long thresholdNanos;
+    private final long intervalMillis;
+    private final long[] bucketBounds;
+    private final Map<String, StallStatistics> statistics = new LinkedHashMap<>();
+    private volatile Activity activity;
+    private volatile Thread fxThread;
+    private volatile boolean running;
+    private Thread watchdogThread;
+
+    private final Object lock = new Object();
+    private long heartbeatPostedAt;
+    private Activity stalledActivity;
+    private StackTraceElement[] stalledStackTrace;
+
+    public FxThreadWatchdog(long thresholdMillis) {
+        if (thresholdMillis <= 0)
+            throw new IllegalArgumentException("Threshold must be positive: " + thresholdMillis);
+
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.intervalMillis = Math.max(10, thresholdMillis / 4);
+        this.bucketBounds = new long[BUCKET_FACTORS.length + 1];
+        for (int i = 0; i < BUCKET_FACTORS.length; i++)
+            bucketBounds[i] = thresholdMillis * BUCKET_FACTORS[i];
+        bucketBounds[BUCKET_FACTORS.length] = Long.MAX_VALUE;
+    }
+
+    static FxThreadWatchdog getActive() {
+        return active;
+    }
+
+    public synchronized void start() {
+        if (running)
+            return;
+
+        if (Platform.isFxApplicationThread())
+            fxThread = Thread.currentThread();
+        else
+            Platform.runLater(() -> fxThread = Thread.currentThread());
+
+        running = true;
+        active = this;
+        watchdogThread = new Thread(this::watch, "FxThreadWatchdog");
+        watchdogThread.setDaemon(true);
+        watchdogThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running)
+            return;
+
+        running = false;
+        if (active == this)
+            active = null;
+        watchdogThread.interrupt();
+        watchdogThread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    Activity enter(ViewController viewController, String callback) {
+        Activity previous = activity;
+        activity = new Activity(viewController.getClass().getName(), viewController.getTitle(), callback);
+        return previous;
+    }
+
+    void exit(Activity previous) {
+        activity = previous;
+    }
+
+    private void watch() {
+        while (running) {
+            check();
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void check() {
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (heartbeatPostedAt == 0) {
+                heartbeatPostedAt = now;
+                Platform.runLater(this::heartbeat);
+            } else if (stalledStackTrace == null && now - heartbeatPostedAt > thresholdNanos && fxThread != null) {
+                stalledActivity = activity;
+                stalledStackTrace = fxThread.getStackTrace();
+            }
+        }
+    }
+
+    private void heartbeat() {
+        synchronized (lock) {
+            long blockedNanos = System.nanoTime() - heartbeatPostedAt;
+            if (stalledStackTrace != null || blockedNanos > thresholdNanos)
+                record(stalledActivity, TimeUnit.NANOSECONDS.toMillis(blockedNanos), stalledStackTrace);
+
+            heartbeatPostedAt = 0;
+            stalledActivity = null;
+            stalledStackTrace = null;
+        }
+    }
+
+    private void record(Activity activity, long durationMillis, StackTraceElement[] stackTrace) {
+        String controllerClassName = activity != null ? activity.controllerClassName : null;
+        String callback = activity != null ? activity.callback : UNKNOWN_CALLBACK;
+        String key = controllerClassName + "#" + callback;
+        synchronized (statistics) {
+            statistics.computeIfAbsent(key, k -> new StallStatistics(controllerClassName, callback, bucketBounds))
+                    .record(activity != null ? activity.title : null, durationMillis,
+                            stackTrace != null ? stackTrace : new StackTraceElement[0]);
+        }
+    }
+
+    public List<StallStatistics> getStatistics() {
+        synchronized (statistics) {
+            List<StallStatistics> result = new ArrayList<>();
+            statistics.values().forEach(s -> result.add(new StallStatistics(s)));
+            return result;
+        }
+    }
+
+    public void reset() {
+        synchronized (statistics) {
+            statistics.clear();
+        }
+    }
+
+    /**
+     * Return the stall histogram as text, one line per controller class and callback followed by the stack sample of
+     * the longest stall.
+     *
+     * @return the report.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("FX thread stalls longer than ").append(TimeUnit.NANOSECONDS.toMillis(thresholdNanos))
+                .append(" ms (").append(bucketLabels()).append(")\n");
+        for (StallStatistics s : getStatistics()) {
+            report.append(s.getControllerClassName() != null ? s.getControllerClassName() : NONE)
+                    .append('#').append(s.getCallback())
+                    .append(" title=").append(s.getLastTitle() != null ? "'" + s.getLastTitle() + "'" : NONE)
+                    .append(" count=").append(s.getCount())
+                    .append(" total=").append(s.getTotalTime()).append(" ms")
+                    .append(" max=").append(s.getMaxTime()).append(" ms")
+                    .append(" histogram=").append(Arrays.toString(s.getHistogram())).append('\n');
+            for (StackTraceElement e : s.getLongestStackTrace())
+                report.append("\tat ").append(e).append('\n');
+        }
+        return report.toString();
+    }
+
+    public void logReport() {
+        LOGGER.warning(getReport());
+    }
+
+    private String bucketLabels() {
+        StringJoiner labels = new StringJoiner(", ");
+        for (long bound : bucketBounds)
+            labels.add(bound == Long.MAX_VALUE ? ">=" + bucketBounds[bucketBounds.length - 2] : "<" + bound);
+        return labels.toString();
+    }
+
+    static final class Activity {
+
+        private final String controllerClassName;
+        private final String title;
+        private final String callback;
+
+        Activity(String controllerClassName, String title, String callback) {
+            this.controllerClassName = controllerClassName;
+            this.title = title;
+            this.callback = callback;
+        }
+
+    }
+
+    /**
+     * Stalls of a controller class and callback.
+     * <p>Times are in milliseconds. The histogram counts stalls per duration bucket, the buckets are derived from the
+     * threshold of the watchdog: &lt;2, &lt;4, &lt;8, &lt;16, &lt;32 and &gt;=32 times the threshold.</p>
+     */
+    public static final class StallStatistics {
+
+        private final String controllerClassName;
+        private final String callback;
+        private final long[] bucketBounds;
+        private final long[] histogram;
+        private String lastTitle;
+        private long count;
+        private long totalTime;
+        private long maxTime;
+        private StackTraceElement[] longestStackTrace = new StackTraceElement[0];
+
+        StallStatistics(String controllerClassName, String callback, long[] bucketBounds) {
+            this.controllerClassName = controllerClassName;
+            this.callback = callback;
+            this.bucketBounds = bucketBounds;
+            this.histogram = new long[bucketBounds.length];
+        }
+
+        StallStatistics(StallStatistics other) {
+            this.controllerClassName = other.controllerClassName;
+            this.callback = other.callback;
+            this.bucketBounds = other.bucketBounds;
+            this.histogram = other.histogram.clone();
+            this.lastTitle = other.lastTitle;
+            this.count = other.count;
+            this.totalTime = other.totalTime;
+            this.maxTime = other.maxTime;
+            this.longestStackTrace = other.longestStackTrace;
+        }
+
+        void record(String title, long duration, StackTraceElement[] stackTrace) {
+            lastTitle = title;
+            count++;
+            totalTime += duration;
+            if (duration >= maxTime) {
+                maxTime = duration;
+                longestStackTrace = stackTrace;
+            }
+            for (int i = 0; i < bucketBounds.length; i++) {
+                if (duration < bucketBounds[i]) {
+                    histogram[i]++;
+                    break;
+                }
+            }
+        }
+
+        /**
+         * @return the controller class name or <code>null</code> if no view controller callback was running.
+         */
+        public String getControllerClassName() {
+            return controllerClassName;
+        }
+
+        public String getCallback() {
+            return callback;
+        }
+
+        public String getLastTitle() {
+            return lastTitle;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * @return the exclusive upper bound of every histogram bucket, the last bound is {@link Long#MAX_VALUE}.
+         */
+        public long[] getBucketBounds() {
+            return bucketBounds.clone();
+        }
+
+        public StackTraceElement[] getLongestStackTrace() {
+            return longestStackTrace.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "StallStatistics{" +
+                    "controllerClassName='" + controllerClassName + '\'' +
+                    ", callback='" + callback + '\'' +
+                    ", count=" + count +
+                    ", totalTime=" + totalTime +
+                    ", maxTime=" + maxTime +
+                    ", histogram=" + Arrays.toString(histogram) +
+                    '}';
+        }
+
+    }
+
+}
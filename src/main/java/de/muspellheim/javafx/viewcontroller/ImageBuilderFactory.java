@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.fxml.*;
+import javafx.scene.image.*;
+import javafx.util.*;
+
+import java.util.*;
+
+/**
+ * Builds the images of a FXML file from the {@link ImageCache#getDefault() default image cache}, so they are decoded in
+ * background and shared with other views.
+ * <p>An image with <code>backgroundLoading="false"</code> is loaded completely while the FXML file is loaded.</p>
+ */
+class ImageBuilderFactory implements BuilderFactory {
+
+    private final BuilderFactory builderFactory = new JavaFXBuilderFactory();
+    private final List<Image> images = new ArrayList<>();
+
+    @Override
+    public Builder<?> getBuilder(Class<?> type) {
+        if (type == Image.class)
+            return new ImageBuilder();
+
+        return builderFactory.getBuilder(type);
+    }
+
+    List<Image> getImages() {
+        return images;
+    }
+
+    private class ImageBuilder extends AbstractMap<String, Object> implements Builder<Image> {
+
+        private final Map<String, Object> properties = new HashMap<>();
+
+        @Override
+        public Object put(String key, Object value) {
+            return properties.put(key, value);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return properties.entrySet();
+        }
+
+        @Override
+        public Image build() {
+            Object url = properties.get("url");
+            if (url == null)
+                throw new IllegalStateException("Image without url.");
+
+            Image image = ImageCache.getDefault().get(url.toString(),
+                    number("requestedWidth"),
+                    number("requestedHeight"),
+                    bool("preserveRatio", false),
+                    bool("smooth", true),
+                    bool("backgroundLoading", true));
+            images.add(image);
+            return image;
+        }
+
+        private double number(String key) {
+            Object value = properties.get(key);
+            return value != null ? Double.parseDouble(value.toString()) : 0;
+        }
+
+        private boolean bool(String key, boolean defaultValue) {
+            Object value = properties.get(key);
+            return value != null ? Boolean.parseBoolean(value.toString()) : defaultValue;
+        }
+
+    }
+
+}
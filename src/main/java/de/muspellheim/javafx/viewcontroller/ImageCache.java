@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.beans.value.*;
+import javafx.scene.image.*;
+
+import java.util.*;
+
+/**
+ * Size-bounded cache of images decoded in background.
+ * <p>Images of FXML views loaded by a {@link ViewController} are taken from the default cache, so views referencing
+ * the same image share the decoded copy. If the decoded images exceed the maximum size, least recently used images are
+ * evicted from the cache when an image is loaded completely. Views still showing an evicted image keep it.</p>
+ */
+public class ImageCache {
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static ImageCache defaultCache;
+
+    private final long maxBytes;
+    private final Map<Key, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    public ImageCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static synchronized ImageCache getDefault() {
+        if (defaultCache == null)
+            defaultCache = new ImageCache();
+        return defaultCache;
+    }
+
+    public static synchronized void setDefault(ImageCache cache) {
+        defaultCache = Objects.requireNonNull(cache, "cache");
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Image get(String url) {
+        return get(url, 0, 0, false, true);
+    }
+
+    /**
+     * Return the cached image or start loading it in background.
+     *
+     * @param url             the image location.
+     * @param requestedWidth  the width to scale the image to or 0.
+     * @param requestedHeight the height to scale the image to or 0.
+     * @param preserveRatio   keep the aspect ratio while scaling.
+     * @param smooth          use the better filtering algorithm while scaling.
+     * @return the image, maybe still loading.
+     */
+    public Image get(String url, double requestedWidth, double requestedHeight, boolean preserveRatio, boolean smooth) {
+        return get(url, requestedWidth, requestedHeight, preserveRatio, smooth, true);
+    }
+
+    /**
+     * Return the cached image or load it.
+     *
+     * @param url               the image location.
+     * @param requestedWidth    the width to scale the image to or 0.
+     * @param requestedHeight   the height to scale the image to or 0.
+     * @param preserveRatio     keep the aspect ratio while scaling.
+     * @param smooth            use the better filtering algorithm while scaling.
+     * @param backgroundLoading load the image in background, otherwise the returned image is loaded completely.
+     * @return the image, maybe still loading if loaded in background.
+     */
+    public synchronized Image get(String url, double requestedWidth, double requestedHeight, boolean preserveRatio,
+                                  boolean smooth, boolean backgroundLoading) {
+        Key key = new Key(url, requestedWidth, requestedHeight, preserveRatio, smooth);
+        Image image = images.get(key);
+        if (image == null || image.isError() || !backgroundLoading && image.getProgress() < 1) {
+            image = new Image(url, requestedWidth, requestedHeight, preserveRatio, smooth, backgroundLoading);
+            images.put(key, image);
+            if (image.getProgress() >= 1)
+                evict();
+            else
+                image.progressProperty().addListener(new EvictWhenLoaded());
+        }
+        return image;
+    }
+
+    /**
+     * @return the estimated memory of decoded images in bytes.
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (Image image : images.values())
+            size += bytes(image);
+        return size;
+    }
+
+    public synchronized int getImageCount() {
+        return images.size();
+    }
+
+    public synchronized void clear() {
+        images.clear();
+    }
+
+    private synchronized void evict() {
+        long size = getSize();
+        Iterator<Image> it = images.values().iterator();
+        while (size > maxBytes && it.hasNext()) {
+            size -= bytes(it.next());
+            it.remove();
+        }
+    }
+
+    private class EvictWhenLoaded implements ChangeListener<Number> {
+
+        @Override
+        public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+            if (newValue.doubleValue() >= 1) {
+                observable.removeListener(this);
+                evict();
+            }
+        }
+
+    }
+
+    private static long bytes(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    private static final class Key {
+
+        private final String url;
+        private final double requestedWidth;
+        private final double requestedHeight;
+        private final boolean preserveRatio;
+        private final boolean smooth;
+
+        Key(String url, double requestedWidth, double requestedHeight, boolean preserveRatio, boolean smooth) {
+            this.url = Objects.requireNonNull(url, "url");
+            this.requestedWidth = requestedWidth;
+            this.requestedHeight = requestedHeight;
+            this.preserveRatio = preserveRatio;
+            this.smooth = smooth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Double.compare(key.requestedWidth, requestedWidth) == 0 &&
+                    Double.compare(key.requestedHeight, requestedHeight) == 0 &&
+                    preserveRatio == key.preserveRatio &&
+                    smooth == key.smooth &&
+                    url.equals(key.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, requestedWidth, requestedHeight, preserveRatio, smooth);
+        }
+
+    }
+
+}
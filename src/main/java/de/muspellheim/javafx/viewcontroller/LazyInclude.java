@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.beans.*;
+import javafx.beans.property.*;
+import javafx.fxml.*;
+import javafx.scene.*;
+import javafx.scene.image.*;
+import javafx.scene.layout.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * Placeholder for a FXML file which is loaded not until the placeholder becomes visible the first time.
+ * <p>Use it instead of <code>fx:include</code> for rarely visited sections, e.g. collapsed panes or secondary tabs:</p>
+ * <pre>
+ * &lt;LazyInclude source="@Details.fxml"/&gt;
+ * </pre>
+ * <p>Inside the view of a {@link ViewController} the included file is loaded with the resources of the view
+ * controller. If the included file has a view controller as FXML controller, its {@link ViewController#viewDidLoad()}
+ * is called after loading, and its appear and disappear events are fired when the placeholder becomes visible or
+ * hidden.</p>
+ * <p>If the included file can not be loaded when the placeholder becomes visible, the error is logged and kept as
+ * {@link #loadErrorProperty() load error} until the source is changed.</p>
+ */
+public class LazyInclude extends StackPane {
+
+    private static final Logger LOGGER = Logger.getLogger(LazyInclude.class.getName());
+
+    private final InvalidationListener visibilityListener = observable -> visibilityDidChange();
+    private final List<Node> observedNodes = new ArrayList<>();
+    private Object controller;
+    private boolean appeared;
+
+    public LazyInclude() {
+        getStyleClass().add("lazy-include");
+        sceneProperty().addListener(observable -> observeVisibility());
+        parentProperty().addListener(observable -> observeVisibility());
+        source.addListener(observable -> {
+            loadError.set(null);
+            visibilityDidChange();
+        });
+    }
+
+    private final StringProperty source = new SimpleStringProperty(this, "source");
+
+    public void setSource(String value) {
+        source.setValue(value);
+    }
+
+    public String getSource() {
+        return source.getValue();
+    }
+
+    public StringProperty sourceProperty() {
+        return source;
+    }
+
+    private ResourceBundle resources;
+
+    /**
+     * Set the resources used outside the view of a view controller.
+     *
+     * @param resources the resources.
+     */
+    public void setResources(ResourceBundle resources) {
+        this.resources = resources;
+    }
+
+    public ResourceBundle getResources() {
+        return resources;
+    }
+
+    private final ReadOnlyBooleanWrapper loaded = new ReadOnlyBooleanWrapper(this, "loaded");
+
+    public boolean isLoaded() {
+        return loaded.get();
+    }
+
+    public ReadOnlyBooleanProperty loadedProperty() {
+        return loaded.getReadOnlyProperty();
+    }
+
+    private final ReadOnlyObjectWrapper<RuntimeException> loadError = new ReadOnlyObjectWrapper<>(this, "loadError");
+
+    /**
+     * Return the error of loading the included file when the placeholder became visible.
+     *
+     * @return the error or <code>null</code>.
+     */
+    public RuntimeException getLoadError() {
+        return loadError.get();
+    }
+
+    public ReadOnlyObjectProperty<RuntimeException> loadErrorProperty() {
+        return loadError.getReadOnlyProperty();
+    }
+
+    /**
+     * Return the FXML controller of the included file.
+     *
+     * @return the controller or <code>null</code> if not loaded or the included file has no controller.
+     */
+    public Object getController() {
+        return controller;
+    }
+
+    private void observeVisibility() {
+        observedNodes.forEach(n -> n.visibleProperty().removeListener(visibilityListener));
+        observedNodes.clear();
+
+        for (Node n = this; n != null; n = n.getParent()) {
+            n.visibleProperty().addListener(visibilityListener);
+            observedNodes.add(n);
+        }
+        visibilityDidChange();
+    }
+
+    private boolean isVisibleInScene() {
+        if (getScene() == null)
+            return false;
+
+        for (Node n = this; n != null; n = n.getParent()) {
+            if (!n.isVisible())
+                return false;
+        }
+        return true;
+    }
+
+    private void visibilityDidChange() {
+        boolean visible = isVisibleInScene();
+        if (visible && !isLoaded() && getSource() != null && getLoadError() == null) {
+            try {
+                load();
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.SEVERE, "Can not load lazy include " + getSource() + ".", ex);
+                loadError.set(ex);
+            }
+            return;
+        }
+
+        if (!(controller instanceof ViewController) || visible == appeared)
+            return;
+        if (ViewTransition.deferWhileSwappingViews(this, this::visibilityDidChange))
+            return;
+
+        ViewController viewController = (ViewController) controller;
+        appeared = visible;
+        if (visible) {
+            viewController.track("viewWillAppear", viewController::viewWillAppear);
+            viewController.track("viewDidAppear", viewController::viewDidAppear);
+        } else {
+            viewController.track("viewWillDisappear", viewController::viewWillDisappear);
+            viewController.track("viewDidDisappear", viewController::viewDidDisappear);
+        }
+    }
+
+    /**
+     * Load the included file now, regardless of its visibility.
+     */
+    public void load() {
+        if (isLoaded())
+            return;
+
+        URL location;
+        try {
+            location = new URL(getSource());
+        } catch (MalformedURLException ex) {
+            throw new IllegalStateException("Invalid source " + getSource() + ", use @ to resolve relative locations.", ex);
+        }
+
+        ViewController owner = ViewController.ownerOf(this);
+        ViewManifest.recordViewLoad(LazyInclude.class, location, owner != null ? owner.getResources() : getResources());
+        FXMLLoader loader = new FXMLLoader(location, owner != null ? owner.trackResources() : getResources());
+        List<Image> images;
+        try {
+            images = ViewController.load(loader);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not load view from location " + location + ".", ex);
+        }
+        if (owner != null)
+            owner.collectLocalizedTexts(loader.getRoot());
+
+        controller = loader.getController();
+        getChildren().setAll((Node) loader.getRoot());
+        loaded.set(true);
+
+        if (controller instanceof ViewController)
+            ((ViewController) controller).includedViewDidLoad(images);
+        visibilityDidChange();
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.beans.property.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Holds the locale of the app and a shared cache of resource bundles per class loader.
+ * <p>View controllers update the localized texts of loaded views when the locale changes. Change the locale on the
+ * JavaFX application thread.</p>
+ */
+public final class Localization {
+
+    private static final ObjectProperty<Locale> locale = new SimpleObjectProperty<>(null, "locale", Locale.getDefault());
+    private static final Map<ClassLoader, Map<String, ResourceBundle>> bundles =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Localization() {
+    }
+
+    public static void setLocale(Locale value) {
+        locale.setValue(Objects.requireNonNull(value, "value"));
+    }
+
+    public static Locale getLocale() {
+        return locale.getValue();
+    }
+
+    public static ObjectProperty<Locale> localeProperty() {
+        return locale;
+    }
+
+    public static ResourceBundle getBundle(String baseName) {
+        return getBundle(baseName, getLocale());
+    }
+
+    public static ResourceBundle getBundle(String baseName, Locale locale) {
+        return getBundle(baseName, locale, Thread.currentThread().getContextClassLoader());
+    }
+
+    public static ResourceBundle getBundle(String baseName, Locale locale, ClassLoader classLoader) {
+        ClassLoader loader = classLoader != null ? classLoader : Localization.class.getClassLoader();
+        return bundles.computeIfAbsent(loader, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(baseName + '@' + locale.toLanguageTag(),
+                        key -> ResourceBundle.getBundle(baseName, locale, loader));
+    }
+
+    public static void clearCache() {
+        bundles.clear();
+    }
+
+}
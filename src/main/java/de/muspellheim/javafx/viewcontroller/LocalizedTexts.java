@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.beans.property.*;
+import javafx.scene.*;
+import javafx.scene.control.*;
+import javafx.scene.text.*;
+
+import java.util.*;
+
+/**
+ * Remembers the text properties of a view filled from <code>%key</code> resources while loading FXML.
+ * <p>The FXML loader does not tell which node uses a resource. So while loading, the resource bundle appends an
+ * invisible marker identifying the key to every text value. After loading, the texts of the view are searched for
+ * markers, each marked text remembers its key and the marker is removed.</p>
+ * <p>A text is only updated when the locale changes, if it is not bound and still shows the text of the previous
+ * locale, so texts changed by code are kept.</p>
+ */
+class LocalizedTexts {
+
+    private static final char MARKER_BOUNDARY = '\u2063';
+    private static final char MARKER_ZERO = '\u200B';
+    private static final char MARKER_ONE = '\u200C';
+
+    private final List<LocalizedText> markedTexts = new ArrayList<>();
+    private final List<LocalizedText> texts = new ArrayList<>();
+
+    ResourceBundle track(ResourceBundle resources) {
+        return new TrackingResourceBundle(resources);
+    }
+
+    void collect(Node root) {
+        if (!markedTexts.isEmpty())
+            collectNode(root);
+        markedTexts.clear();
+    }
+
+    private void collectNode(Node node) {
+        if (node instanceof Labeled) {
+            collect(((Labeled) node).textProperty());
+            collectIfNotNull(((Labeled) node).getGraphic());
+        }
+        if (node instanceof TextInputControl)
+            collect(((TextInputControl) node).promptTextProperty());
+        if (node instanceof Text)
+            collect(((Text) node).textProperty());
+        if (node instanceof Control && ((Control) node).getTooltip() != null)
+            collect(((Control) node).getTooltip().textProperty());
+        if (node instanceof Control && ((Control) node).getContextMenu() != null)
+            ((Control) node).getContextMenu().getItems().forEach(this::collectMenuItem);
+
+        // Content of these controls becomes children not until the skin is created.
+        if (node instanceof TitledPane)
+            collectIfNotNull(((TitledPane) node).getContent());
+        if (node instanceof ScrollPane)
+            collectIfNotNull(((ScrollPane) node).getContent());
+        if (node instanceof SplitPane)
+            ((SplitPane) node).getItems().forEach(this::collectNode);
+        if (node instanceof Accordion)
+            ((Accordion) node).getPanes().forEach(this::collectNode);
+        if (node instanceof ToolBar)
+            ((ToolBar) node).getItems().forEach(this::collectNode);
+        if (node instanceof MenuButton)
+            ((MenuButton) node).getItems().forEach(this::collectMenuItem);
+        if (node instanceof MenuBar)
+            ((MenuBar) node).getMenus().forEach(this::collectMenuItem);
+        if (node instanceof TableView)
+            ((TableView<?>) node).getColumns().forEach(this::collectColumn);
+        if (node instanceof TreeTableView)
+            ((TreeTableView<?>) node).getColumns().forEach(this::collectColumn);
+        if (node instanceof TabPane) {
+            for (Tab tab : ((TabPane) node).getTabs()) {
+                collect(tab.textProperty());
+                collectIfNotNull(tab.getGraphic());
+                collectIfNotNull(tab.getContent());
+            }
+        }
+
+        if (node instanceof Parent && !(node instanceof Control))
+            ((Parent) node).getChildrenUnmodifiable().forEach(this::collectNode);
+    }
+
+    private void collectIfNotNull(Node node) {
+        if (node != null)
+            collectNode(node);
+    }
+
+    private void collectMenuItem(MenuItem item) {
+        collect(item.textProperty());
+        collectIfNotNull(item.getGraphic());
+        if (item instanceof CustomMenuItem)
+            collectIfNotNull(((CustomMenuItem) item).getContent());
+        if (item instanceof Menu)
+            ((Menu) item).getItems().forEach(this::collectMenuItem);
+    }
+
+    private void collectColumn(TableColumnBase<?, ?> column) {
+        collect(column.textProperty());
+        collectIfNotNull(column.getGraphic());
+        column.getColumns().forEach(this::collectColumn);
+    }
+
+    private void collect(StringProperty property) {
+        LocalizedText markedText = markedText(property.getValue());
+        if (markedText == null || property.isBound())
+            return;
+
+        property.setValue(markedText.value);
+        texts.add(new LocalizedText(property, markedText.key, markedText.value));
+    }
+
+    private LocalizedText markedText(String text) {
+        if (text == null || text.length() < 2 || text.charAt(text.length() - 1) != MARKER_BOUNDARY)
+            return null;
+
+        int start = text.lastIndexOf(MARKER_BOUNDARY, text.length() - 2);
+        if (start < 0 || start == text.length() - 2)
+            return null;
+
+        int index = 0;
+        for (int i = start + 1; i < text.length() - 1; i++) {
+            char c = text.charAt(i);
+            if (c != MARKER_ZERO && c != MARKER_ONE)
+                return null;
+            index = index * 2 + (c == MARKER_ONE ? 1 : 0);
+        }
+        return index < markedTexts.size() ? markedTexts.get(index) : null;
+    }
+
+    private String mark(String key, String value) {
+        int index = markedTexts.size();
+        markedTexts.add(new LocalizedText(null, key, value));
+
+        StringBuilder marked = new StringBuilder(value).append(MARKER_BOUNDARY);
+        for (char c : Integer.toBinaryString(index).toCharArray())
+            marked.append(c == '1' ? MARKER_ONE : MARKER_ZERO);
+        return marked.append(MARKER_BOUNDARY).toString();
+    }
+
+    void update(ResourceBundle resources) {
+        for (LocalizedText e : texts) {
+            if (!resources.containsKey(e.key) || e.property.isBound())
+                continue;
+            if (!Objects.equals(e.property.getValue(), e.value))
+                continue;
+
+            e.value = resources.getString(e.key);
+            e.property.setValue(e.value);
+        }
+    }
+
+    private static class LocalizedText {
+
+        private final StringProperty property;
+        private final String key;
+        private String value;
+
+        LocalizedText(StringProperty property, String key, String value) {
+            this.property = property;
+            this.key = key;
+            this.value = value;
+        }
+
+    }
+
+    private class TrackingResourceBundle extends ResourceBundle {
+
+        private final ResourceBundle resources;
+
+        TrackingResourceBundle(ResourceBundle resources) {
+            this.resources = resources;
+        }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            if (!resources.containsKey(key))
+                return null;
+
+            Object value = resources.getObject(key);
+            return value instanceof String ? mark(key, (String) value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            return resources.getKeys();
+        }
+
+        @Override
+        protected Set<String> handleKeySet() {
+            return resources.keySet();
+        }
+
+    }
+
+}
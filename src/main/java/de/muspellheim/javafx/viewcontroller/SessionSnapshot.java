@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import java.io.*;
+
+/**
+ * Binary snapshot of a chain of presented view controllers.
+ * <p>For every view controller, from root to top, the snapshot contains the class name and the state written by
+ * {@link ViewController#saveState(DataOutput)}. Restored view controllers are created with their public no-arg
+ * constructor.</p>
+ * <p>The depth of the chain and the size of a state are bounded, so a corrupt snapshot is rejected before it allocates
+ * memory.</p>
+ */
+class SessionSnapshot {
+
+    private static final int MAGIC = 0x56435353;
+    private static final int VERSION = 1;
+    private static final int MAX_DEPTH = 256;
+    private static final int MAX_STATE_SIZE = 1024 * 1024;
+
+    private SessionSnapshot() {
+    }
+
+    static void write(ViewController rootViewController, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(depth(rootViewController));
+        for (ViewController vc = rootViewController; vc != null; vc = vc.getPresentedViewController()) {
+            ByteArrayOutputStream state = new ByteArrayOutputStream();
+            vc.saveState(new DataOutputStream(state));
+            if (state.size() > MAX_STATE_SIZE)
+                throw new IOException("State of " + vc + " exceeds " + MAX_STATE_SIZE + " bytes.");
+            data.writeUTF(vc.getClass().getName());
+            data.writeInt(state.size());
+            state.writeTo(data);
+        }
+        data.flush();
+    }
+
+    private static int depth(ViewController rootViewController) {
+        int depth = 0;
+        for (ViewController vc = rootViewController; vc != null; vc = vc.getPresentedViewController())
+            depth++;
+        return depth;
+    }
+
+    static ViewController read(InputStream in, ClassLoader classLoader) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new StreamCorruptedException("Not a session snapshot.");
+        int version = data.readShort();
+        if (version != VERSION)
+            throw new StreamCorruptedException("Unsupported session snapshot version " + version + ".");
+
+        int depth = data.readInt();
+        if (depth < 1)
+            throw new StreamCorruptedException("Session snapshot without root view controller.");
+        if (depth > MAX_DEPTH)
+            throw new StreamCorruptedException("Invalid session snapshot depth " + depth + ".");
+
+        ViewController root = null;
+        ViewController top = null;
+        for (int i = 0; i < depth; i++) {
+            ViewController vc = newViewController(data.readUTF(), classLoader);
+            int stateSize = data.readInt();
+            if (stateSize < 0 || stateSize > MAX_STATE_SIZE)
+                throw new StreamCorruptedException("Invalid state size " + stateSize + ".");
+            byte[] state = new byte[stateSize];
+            data.readFully(state);
+            vc.restoreState(new DataInputStream(new ByteArrayInputStream(state)));
+
+            if (top == null)
+                root = vc;
+            else
+                top.restorePresentedViewController(vc);
+            top = vc;
+        }
+        return root;
+    }
+
+    private static ViewController newViewController(String className, ClassLoader classLoader) {
+        try {
+            ClassLoader loader = classLoader != null ? classLoader : SessionSnapshot.class.getClassLoader();
+            Class<? extends ViewController> type = Class.forName(className, false, loader).asSubclass(ViewController.class);
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            throw new IllegalStateException("Can not restore view controller " + className + ".", ex);
+        }
+    }
+
+}
@@ -8,7 +8,9 @@ package de.muspellheim.javafx.viewcontroller;
 import javafx.scene.*;
 import javafx.stage.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.function.*;
 
 public class StageController {
 
@@ -16,6 +18,8 @@ public class StageController {
     private final double width;
     private final double height;
     private Scene scene;
+    private StagePool pool;
+    private boolean released;
 
     public StageController() {
         this(new Stage());
@@ -34,15 +38,38 @@ public class StageController {
         this.width = width;
         this.height = height;
 
-        stage.onShowingProperty().set(event -> existRootViewController(() -> getRootViewController().viewWillAppear()));
-        stage.onShownProperty().set(event -> existRootViewController(() -> getRootViewController().viewDidAppear()));
-        stage.onHidingProperty().set(event -> existRootViewController(() -> getRootViewController().viewWillDisappear()));
-        stage.onHiddenProperty().set(event -> existRootViewController(() -> getRootViewController().viewDidDisappear()));
+        stage.onShowingProperty().set(event -> existRootViewController("viewWillAppear", ViewController::viewWillAppear));
+        stage.onShownProperty().set(event -> existRootViewController("viewDidAppear", ViewController::viewDidAppear));
+        stage.onHidingProperty().set(event -> existRootViewController("viewWillDisappear", ViewController::viewWillDisappear));
+        stage.onHiddenProperty().set(event -> {
+            existRootViewController("viewDidDisappear", ViewController::viewDidDisappear);
+            releaseToPool();
+        });
     }
 
-    private void existRootViewController(Runnable ifTrue) {
-        if (getRootViewController() != null)
-            ifTrue.run();
+    StageController(Stage stage, StagePool pool) {
+        this(stage);
+        this.scene = stage.getScene();
+        this.pool = pool;
+    }
+
+    private void releaseToPool() {
+        if (pool != null) {
+            pool.release(stage);
+            pool = null;
+            released = true;
+        }
+    }
+
+    private void checkNotReleased() {
+        if (released)
+            throw new IllegalStateException("Stage was returned to the stage pool when the window was hidden.");
+    }
+
+    private void existRootViewController(String callback, Consumer<ViewController> ifTrue) {
+        ViewController viewController = getRootViewController();
+        if (viewController != null)
+            viewController.track(callback, () -> ifTrue.accept(viewController));
     }
 
     public Stage getStage() {
@@ -50,29 +77,124 @@ public class StageController {
     }
 
     public void show() {
+        checkNotReleased();
         stage.show();
     }
 
     public void close() {
-        stage.close();
+        if (!released)
+            stage.close();
+    }
+
+    /**
+     * Present a view controller in a window modal to this stage.
+     *
+     * @param viewController the view controller to present.
+     * @return the stage controller of the window.
+     * @see #presentInWindow(ViewController, Modality)
+     */
+    public StageController presentInWindow(ViewController viewController) {
+        return presentInWindow(viewController, Modality.WINDOW_MODAL);
+    }
+
+    /**
+     * Present a view controller in a separate window owned by this stage.
+     * <p>The window is taken from the {@link StagePool#getDefault() default stage pool} and returned to it, when the
+     * window is hidden. The returned stage controller can not show the window again, present a view controller in a new
+     * window instead.</p>
+     *
+     * @param viewController the view controller to present.
+     * @param modality       the modality of the window.
+     * @return the stage controller of the window.
+     */
+    public StageController presentInWindow(ViewController viewController, Modality modality) {
+        StagePool pool = StagePool.getDefault();
+        StageController stageController = new StageController(pool.acquire(stage, modality), pool);
+        stageController.setRootViewController(viewController);
+        stageController.getStage().sizeToScene();
+        stageController.getStage().centerOnScreen();
+        stageController.show();
+        return stageController;
     }
 
     private ViewController rootViewController;
 
     public final void setRootViewController(ViewController rootViewController) {
-        this.rootViewController = Objects.requireNonNull(rootViewController, "rootViewController");
+        Objects.requireNonNull(rootViewController, "rootViewController");
+        checkNotReleased();
+        setRootViewController(rootViewController, rootViewController, false);
+    }
+
+    private void setRootViewController(ViewController rootViewController, ViewController visibleViewController,
+                                       boolean fireViewEvents) {
+        ViewTransition.finishRunning(scene);
+        ViewController hiddenViewController = topViewController(this.rootViewController);
+        Parent view = visibleViewController.getView();
+        boolean changeVisibleView = fireViewEvents && stage.isShowing() && hiddenViewController != null;
+        if (changeVisibleView) {
+            hiddenViewController.track("viewWillDisappear", hiddenViewController::viewWillDisappear);
+            visibleViewController.track("viewWillAppear", visibleViewController::viewWillAppear);
+        }
+        this.rootViewController = rootViewController;
         stage.titleProperty().bind(rootViewController.titleProperty());
 
         if (scene == null) {
-            scene = new Scene(rootViewController.getView(), width, height);
+            scene = new Scene(view, width, height);
             stage.setScene(scene);
+            StylesheetCache.apply(scene, null, visibleViewController);
         } else {
-            scene.setRoot(rootViewController.getView());
+            StylesheetCache.apply(scene, hiddenViewController, visibleViewController);
+            scene.setRoot(view);
+        }
+
+        if (changeVisibleView) {
+            visibleViewController.track("viewDidAppear", visibleViewController::viewDidAppear);
+            hiddenViewController.track("viewDidDisappear", hiddenViewController::viewDidDisappear);
         }
     }
 
+    private static ViewController topViewController(ViewController rootViewController) {
+        ViewController top = rootViewController;
+        while (top != null && top.getPresentedViewController() != null)
+            top = top.getPresentedViewController();
+        return top;
+    }
+
     public final ViewController getRootViewController() {
         return rootViewController;
     }
 
+    /**
+     * Save the chain of presented view controllers as compact binary snapshot.
+     *
+     * @param out the stream to write the snapshot to.
+     * @throws IOException if the snapshot can not be written.
+     * @see ViewController#saveState(DataOutput)
+     */
+    public void saveSession(OutputStream out) throws IOException {
+        if (getRootViewController() == null)
+            throw new IllegalStateException("No root view controller to save.");
+
+        SessionSnapshot.write(getRootViewController(), out);
+    }
+
+    /**
+     * Restore the chain of presented view controllers from a snapshot saved with {@link #saveSession(OutputStream)}.
+     * <p>Only the view of the top view controller is loaded. The views of the presenting view controllers are loaded
+     * when they are revealed by dismiss. If the stage is showing, the view events of the hidden and the restored top
+     * view controller are fired.</p>
+     *
+     * @param in the stream to read the snapshot from.
+     * @throws IOException if the snapshot can not be read.
+     * @see ViewController#restoreState(DataInput)
+     */
+    public void restoreSession(InputStream in) throws IOException {
+        restoreSession(in, Thread.currentThread().getContextClassLoader());
+    }
+
+    public void restoreSession(InputStream in, ClassLoader classLoader) throws IOException {
+        ViewController root = SessionSnapshot.read(in, classLoader);
+        setRootViewController(root, topViewController(root), true);
+    }
+
 }
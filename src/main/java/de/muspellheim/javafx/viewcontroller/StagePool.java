@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.scene.*;
+import javafx.stage.*;
+
+import java.util.*;
+
+/**
+ * Pool of hidden stages with a scene, reused by {@link StageController#presentInWindow(ViewController)}.
+ * <p>JavaFX does not allow to change owner and modality of a stage once it was shown. So a stage returned to the pool
+ * is reused only for the same owner and modality, stages created by {@link #warmUp(int)} can be used for any. Returned
+ * stages whose owner is no longer showing are dropped, and if the pool is full the least recently returned stage is
+ * dropped.</p>
+ * <p>Use the pool on the JavaFX application thread only.</p>
+ */
+public class StagePool {
+
+    private static StagePool defaultPool;
+
+    private final int maxSize;
+    private final Deque<Stage> unusedStages = new ArrayDeque<>();
+    private final Deque<Stage> releasedStages = new ArrayDeque<>();
+
+    public StagePool() {
+        this(8);
+    }
+
+    public StagePool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static StagePool getDefault() {
+        if (defaultPool == null)
+            defaultPool = new StagePool();
+        return defaultPool;
+    }
+
+    public static void setDefault(StagePool pool) {
+        defaultPool = Objects.requireNonNull(pool, "pool");
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Create stages ahead of time, e.g. at startup.
+     *
+     * @param count number of stages to create.
+     */
+    public void warmUp(int count) {
+        for (int i = 0; i < count && size() < maxSize; i++)
+            unusedStages.offerLast(createStage());
+    }
+
+    public int size() {
+        return unusedStages.size() + releasedStages.size();
+    }
+
+    Stage acquire(Window owner, Modality modality) {
+        dropOrphanedStages();
+        for (Iterator<Stage> it = releasedStages.iterator(); it.hasNext(); ) {
+            Stage stage = it.next();
+            if (stage.getOwner() == owner && stage.getModality() == modality) {
+                it.remove();
+                return stage;
+            }
+        }
+
+        Stage stage = unusedStages.isEmpty() ? createStage() : unusedStages.pollFirst();
+        stage.initOwner(owner);
+        stage.initModality(modality);
+        return stage;
+    }
+
+    void release(Stage stage) {
+        stage.titleProperty().unbind();
+        stage.setTitle(null);
+        stage.getScene().setRoot(new Group());
+        StylesheetCache.clear(stage.getScene());
+
+        dropOrphanedStages();
+        if (size() >= maxSize)
+            releasedStages.pollLast();
+        if (size() < maxSize)
+            releasedStages.offerFirst(stage);
+    }
+
+    private void dropOrphanedStages() {
+        releasedStages.removeIf(s -> s.getOwner() != null && !s.getOwner().isShowing());
+    }
+
+    private static Stage createStage() {
+        Stage stage = new Stage();
+        stage.setScene(new Scene(new Group()));
+        return stage;
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.scene.*;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Process-wide cache of the stylesheets declared by view controllers.
+ * <p>JavaFX parses a stylesheet once and shares it between all scenes using it, but forgets it when no scene uses it
+ * anymore. The cache keeps every stylesheet attached by a view controller in a hidden scene, so it is parsed only once
+ * regardless how often it is attached to and detached from visible scenes.</p>
+ * <p>When a view controller becomes visible, the stylesheets of the hidden view controller are detached from the
+ * scene and the stylesheets of the visible view controller are attached. Changes of the stylesheets of the visible view
+ * controller are applied to the scene immediately. Every change of scene stylesheets causes JavaFX to reapply CSS to
+ * the whole scene, the metrics count these changes.</p>
+ */
+public final class StylesheetCache {
+
+    private static final Map<String, String> locations = new ConcurrentHashMap<>();
+    private static final AtomicLong viewChanges = new AtomicLong();
+    private static final AtomicLong stylesheetChanges = new AtomicLong();
+    private static final AtomicLong attachedStylesheets = new AtomicLong();
+    private static final AtomicLong detachedStylesheets = new AtomicLong();
+
+    private static Scene cacheScene;
+
+    private StylesheetCache() {
+    }
+
+    /**
+     * Resolve a stylesheet relative to a class.
+     *
+     * @param type the class to resolve the stylesheet name relative to.
+     * @param name the stylesheet name.
+     * @return the stylesheet location.
+     */
+    public static String resolve(Class<?> type, String name) {
+        return locations.computeIfAbsent(type.getName() + ':' + name, key -> {
+            URL location = type.getResource(name);
+            if (location == null)
+                throw new IllegalArgumentException("Stylesheet " + name + " not found relative to " + type.getName() + ".");
+            return location.toExternalForm();
+        });
+    }
+
+    static void apply(Scene scene, ViewController hiddenViewController, ViewController visibleViewController) {
+        AppliedStylesheets applied = (AppliedStylesheets) scene.getProperties().get(AppliedStylesheets.class);
+        List<String> oldStylesheets;
+        if (applied != null)
+            oldStylesheets = applied.stylesheets;
+        else if (hiddenViewController != null)
+            oldStylesheets = hiddenViewController.getStylesheets();
+        else
+            oldStylesheets = Collections.emptyList();
+        List<String> newStylesheets = visibleViewController.getStylesheets();
+        if (applied == null || applied.viewController != visibleViewController)
+            viewChanges.incrementAndGet();
+
+        List<String> stylesheets = new ArrayList<>(scene.getStylesheets());
+        int detached = 0;
+        for (String e : oldStylesheets) {
+            if (!newStylesheets.contains(e) && stylesheets.remove(e))
+                detached++;
+        }
+        int attached = 0;
+        for (String e : newStylesheets) {
+            if (!stylesheets.contains(e)) {
+                cache(e);
+                stylesheets.add(e);
+                attached++;
+            }
+        }
+
+        if (attached > 0 || detached > 0) {
+            scene.getStylesheets().setAll(stylesheets);
+            stylesheetChanges.incrementAndGet();
+            attachedStylesheets.addAndGet(attached);
+            detachedStylesheets.addAndGet(detached);
+        }
+        scene.getProperties().put(AppliedStylesheets.class,
+                new AppliedStylesheets(visibleViewController, new ArrayList<>(newStylesheets)));
+    }
+
+    static void stylesheetsDidChange(ViewController viewController) {
+        viewController.invalidateSnapshot();
+        Parent view = viewController.viewIfLoaded();
+        Scene scene = view != null ? view.getScene() : null;
+        if (scene == null)
+            return;
+
+        AppliedStylesheets applied = (AppliedStylesheets) scene.getProperties().get(AppliedStylesheets.class);
+        if (applied != null && applied.viewController == viewController)
+            apply(scene, viewController, viewController);
+    }
+
+    static void clear(Scene scene) {
+        scene.getStylesheets().clear();
+        scene.getProperties().remove(AppliedStylesheets.class);
+    }
+
+    private static void cache(String stylesheet) {
+        if (cacheScene == null)
+            cacheScene = new Scene(new Group());
+        if (!cacheScene.getStylesheets().contains(stylesheet)) {
+            cacheScene.getStylesheets().add(stylesheet);
+            cacheScene.getRoot().applyCss();
+        }
+    }
+
+    public static StylesheetMetrics getMetrics() {
+        return new StylesheetMetrics(viewChanges.get(), stylesheetChanges.get(), attachedStylesheets.get(),
+                detachedStylesheets.get());
+    }
+
+    public static void resetMetrics() {
+        viewChanges.set(0);
+        stylesheetChanges.set(0);
+        attachedStylesheets.set(0);
+        detachedStylesheets.set(0);
+    }
+
+    private static final class AppliedStylesheets {
+
+        private final ViewController viewController;
+        private final List<String> stylesheets;
+
+        AppliedStylesheets(ViewController viewController, List<String> stylesheets) {
+            this.viewController = viewController;
+            this.stylesheets = stylesheets;
+        }
+
+    }
+
+    /**
+     * Counts of view changes and the resulting changes of scene stylesheets.
+     */
+    public static final class StylesheetMetrics {
+
+        private final long viewChanges;
+        private final long stylesheetChanges;
+        private final long attachedStylesheets;
+        private final long detachedStylesheets;
+
+        StylesheetMetrics(long viewChanges, long stylesheetChanges, long attachedStylesheets, long detachedStylesheets) {
+            this.viewChanges = viewChanges;
+            this.stylesheetChanges = stylesheetChanges;
+            this.attachedStylesheets = attachedStylesheets;
+            this.detachedStylesheets = detachedStylesheets;
+        }
+
+        /**
+         * @return how often a view controller became visible in a scene.
+         */
+        public long getViewChanges() {
+            return viewChanges;
+        }
+
+        /**
+         * @return how often a view change changed the scene stylesheets and CSS was reapplied to the whole scene.
+         */
+        public long getStylesheetChanges() {
+            return stylesheetChanges;
+        }
+
+        public long getAttachedStylesheets() {
+            return attachedStylesheets;
+        }
+
+        public long getDetachedStylesheets() {
+            return detachedStylesheets;
+        }
+
+        @Override
+        public String toString() {
+            return "StylesheetMetrics{" +
+                    "viewChanges=" + viewChanges +
+                    ", stylesheetChanges=" + stylesheetChanges +
+                    ", attachedStylesheets=" + attachedStylesheets +
+                    ", detachedStylesheets=" + detachedStylesheets +
+                    '}';
+        }
+
+    }
+
+}
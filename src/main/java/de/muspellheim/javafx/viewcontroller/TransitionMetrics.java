@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+/**
+ * Frame times measured while a {@link ViewTransition} was playing.
+ */
+public final class TransitionMetrics {
+
+    private static final double FRAME_MILLIS = 1000.0 / 60;
+
+    private final int frameCount;
+    private final double duration;
+    private final double maxFrameTime;
+    private final int droppedFrames;
+
+    TransitionMetrics(long[] frameTimestamps, int frameCount) {
+        this.frameCount = frameCount;
+        double max = 0;
+        int dropped = 0;
+        for (int i = 1; i < frameCount; i++) {
+            double frameTime = (frameTimestamps[i] - frameTimestamps[i - 1]) / 1_000_000.0;
+            max = Math.max(max, frameTime);
+            if (frameTime > 1.5 * FRAME_MILLIS)
+                dropped += (int) Math.round(frameTime / FRAME_MILLIS) - 1;
+        }
+        this.duration = frameCount > 1 ? (frameTimestamps[frameCount - 1] - frameTimestamps[0]) / 1_000_000.0 : 0;
+        this.maxFrameTime = max;
+        this.droppedFrames = dropped;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the duration between first and last frame in milliseconds.
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the average frame time in milliseconds.
+     */
+    public double getAverageFrameTime() {
+        return frameCount > 1 ? duration / (frameCount - 1) : 0;
+    }
+
+    /**
+     * @return the longest frame time in milliseconds.
+     */
+    public double getMaxFrameTime() {
+        return maxFrameTime;
+    }
+
+    /**
+     * @return the number of frames missed at 60 frames per second.
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public double getFramesPerSecond() {
+        return duration > 0 ? (frameCount - 1) * 1000 / duration : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionMetrics{" +
+                "frameCount=" + frameCount +
+                ", duration=" + duration +
+                ", averageFrameTime=" + getAverageFrameTime() +
+                ", maxFrameTime=" + maxFrameTime +
+                ", droppedFrames=" + droppedFrames +
+                '}';
+    }
+
+}
@@ -5,9 +5,12 @@
 
 package de.muspellheim.javafx.viewcontroller;
 
+import javafx.beans.*;
 import javafx.beans.property.*;
+import javafx.collections.*;
 import javafx.fxml.*;
 import javafx.scene.*;
+import javafx.scene.image.*;
 
 import java.io.*;
 import java.net.*;
@@ -30,12 +33,15 @@ import java.util.*;
  * <li>{@link #viewDidAppear()} called after the view is added to the view hierarchy.</li>
  * <li>{@link #viewWillDisappear()} called before the view is removed to the view hierarchy.</li>
  * <li>{@link #viewDidDisappear()} called after the view is removed to the view hierarchy.</li>
+ * <li>{@link #resourcesDidChange()} called after the resources are changed to the new locale.</li>
  * </ul>
  */
 public class ViewController {
 
     private final URL fxmlLocation;
-    private final ResourceBundle resources;
+    private final InvalidationListener localeListener = observable -> localeDidChange();
+    private ResourceBundle resources;
+    private LocalizedTexts localizedTexts;
 
     public ViewController() {
         this(null, null);
@@ -48,6 +54,10 @@ public class ViewController {
     public ViewController(URL fxmlLocation, ResourceBundle resources) {
         this.fxmlLocation = fxmlLocation;
         this.resources = resources;
+
+        if (resources != null)
+            Localization.localeProperty().addListener(new WeakInvalidationListener(localeListener));
+        stylesheets.addListener((ListChangeListener<String>) change -> StylesheetCache.stylesheetsDidChange(this));
     }
 
     /**
@@ -62,13 +72,33 @@ public class ViewController {
     public static <T extends ViewController> T createController(Class<T> controllerType) {
         String viewname = controllerType.getSimpleName().replace("Controller", "View") + ".fxml";
         URL location = controllerType.getResource(viewname);
+        ViewManifest.recordViewLoad(controllerType, location, null);
         FXMLLoader loader = new FXMLLoader(location);
+        List<Image> images;
         try {
-            loader.load();
+            images = load(loader);
         } catch (IOException ex) {
             throw new IllegalStateException("Can not load view from location " + location + ": " + ex, ex);
         }
-        return loader.getController();
+        T controller = loader.getController();
+        ViewController viewController = controller;
+        if (viewController != null) {
+            viewController.markViewOwner();
+            viewController.pendingImages.addAll(images);
+            viewController.awaitPendingImages();
+        }
+        return controller;
+    }
+
+    static List<Image> load(FXMLLoader loader) throws IOException {
+        ImageBuilderFactory builderFactory = new ImageBuilderFactory();
+        loader.setBuilderFactory(builderFactory);
+        byte[] template = ViewPreloader.takeTemplate(loader.getLocation());
+        if (template != null)
+            loader.load(new ByteArrayInputStream(template));
+        else
+            loader.load();
+        return builderFactory.getImages();
     }
 
 
@@ -80,6 +110,26 @@ public class ViewController {
         return resources;
     }
 
+    private void localeDidChange() {
+        String baseName = resources.getBaseBundleName();
+        if (baseName == null)
+            return;
+
+        resources = Localization.getBundle(baseName, Localization.getLocale(), getClass().getClassLoader());
+        if (localizedTexts != null)
+            localizedTexts.update(resources);
+        invalidateSnapshot();
+        track("resourcesDidChange", this::resourcesDidChange);
+    }
+
+    /**
+     * Called after the locale is changed.
+     * <p>Texts of the FXML view using <code>%key</code> resources are already updated. Override to update texts set
+     * by code.</p>
+     */
+    protected void resourcesDidChange() {
+    }
+
     @FXML
     private Parent view;
 
@@ -90,6 +140,7 @@ public class ViewController {
 
     public void setView(Parent view) {
         this.view = view;
+        updateViewReady();
     }
 
     public boolean isViewLoaded() {
@@ -98,28 +149,153 @@ public class ViewController {
 
     protected void loadView() {
         try {
-            FXMLLoader loader = new FXMLLoader(getFXMLLocation(), getResources());
+            FXMLLoader loader = new FXMLLoader(getFXMLLocation(), trackResources());
             loader.setController(this);
-            loader.load();
+            pendingImages.addAll(load(loader));
+            collectLocalizedTexts(loader.getRoot());
         } catch (IOException ex) {
             throw new IllegalStateException("Can not load view from location " + getFXMLLocation() + ".", ex);
         }
     }
 
+    ResourceBundle trackResources() {
+        if (getResources() == null)
+            return null;
+
+        if (localizedTexts == null)
+            localizedTexts = new LocalizedTexts();
+        return localizedTexts.track(getResources());
+    }
+
+    void collectLocalizedTexts(Object root) {
+        if (localizedTexts != null && root instanceof Node)
+            localizedTexts.collect((Node) root);
+    }
+
     protected void viewDidLoad() {
     }
 
     protected void loadViewIfNeeded() {
         if (!isViewLoaded()) {
-            loadView();
-            viewDidLoad();
+            ViewManifest.recordViewLoad(getClass(), getFXMLLocation(), getResources());
+            track("loadView", this::loadView);
+            markViewOwner();
+            awaitPendingImages();
+            track("viewDidLoad", this::viewDidLoad);
         }
     }
 
+    private final InvalidationListener imageListener = observable -> updateViewReady();
+    private final List<Image> pendingImages = new ArrayList<>();
+    private final ReadOnlyBooleanWrapper viewReady = new ReadOnlyBooleanWrapper(this, "viewReady");
+
+    /**
+     * Return whether the view is loaded and all images of the FXML view are decoded.
+     *
+     * @return <code>true</code> if the view can be presented without waiting for images.
+     */
+    public boolean isViewReady() {
+        return viewReady.get();
+    }
+
+    public ReadOnlyBooleanProperty viewReadyProperty() {
+        return viewReady.getReadOnlyProperty();
+    }
+
+    /**
+     * Load the view if needed and run the action, when the view is ready.
+     * <p>Images of the FXML view are decoded in background, e.g. present the view controller when the action is
+     * run.</p>
+     *
+     * @param action the action to run on the JavaFX application thread.
+     */
+    public void whenViewReady(Runnable action) {
+        loadViewIfNeeded();
+        // The view may be injected by a FXML loader, which does not tell the controller.
+        updateViewReady();
+        if (isViewReady()) {
+            action.run();
+            return;
+        }
+
+        viewReady.addListener(new InvalidationListener() {
+            @Override
+            public void invalidated(javafx.beans.Observable observable) {
+                if (isViewReady()) {
+                    viewReady.removeListener(this);
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private void awaitPendingImages() {
+        for (Image image : pendingImages) {
+            image.progressProperty().addListener(imageListener);
+            image.errorProperty().addListener(imageListener);
+        }
+        updateViewReady();
+    }
+
+    private void updateViewReady() {
+        for (Iterator<Image> it = pendingImages.iterator(); it.hasNext(); ) {
+            Image image = it.next();
+            if (image.getProgress() >= 1 || image.isError()) {
+                image.progressProperty().removeListener(imageListener);
+                image.errorProperty().removeListener(imageListener);
+                it.remove();
+            }
+        }
+        viewReady.set(isViewLoaded() && pendingImages.isEmpty());
+    }
+
+    void includedViewDidLoad(List<Image> images) {
+        markViewOwner();
+        pendingImages.addAll(images);
+        awaitPendingImages();
+        track("viewDidLoad", this::viewDidLoad);
+    }
+
+    private void markViewOwner() {
+        if (view != null)
+            view.getProperties().put(ViewController.class, this);
+    }
+
+    static ViewController ownerOf(Node node) {
+        for (Node n = node; n != null; n = n.getParent()) {
+            if (n.hasProperties() && n.getProperties().get(ViewController.class) instanceof ViewController)
+                return (ViewController) n.getProperties().get(ViewController.class);
+        }
+        return null;
+    }
+
     public Parent viewIfLoaded() {
         return view;
     }
 
+    private final ObservableList<String> stylesheets = FXCollections.observableArrayList();
+
+    /**
+     * Return the stylesheets attached to the scene while the view is visible.
+     * <p>Declare the stylesheets in the constructor, e.g. with {@link #addStylesheet(String)}. Changes while the view is
+     * visible are applied to the scene immediately.</p>
+     *
+     * @return the stylesheet locations.
+     * @see StylesheetCache
+     */
+    public ObservableList<String> getStylesheets() {
+        return stylesheets;
+    }
+
+    /**
+     * Add a stylesheet resolved relative to the class of this controller.
+     *
+     * @param name the stylesheet name.
+     */
+    protected void addStylesheet(String name) {
+        stylesheets.add(StylesheetCache.resolve(getClass(), name));
+    }
+
     private StringProperty title;
 
     public void setTitle(String value) {
@@ -142,17 +318,31 @@ public class ViewController {
     }
 
     public void present(ViewController viewControllerToPresent, Runnable completion) {
+        present(viewControllerToPresent, ViewTransition.NONE, completion);
+    }
+
+    public void present(ViewController viewControllerToPresent, ViewTransition transition, Runnable completion) {
+        Objects.requireNonNull(transition, "transition");
+        ViewTransition.finishRunning(this);
         Parent viewToPresent = viewControllerToPresent.getView();
-        viewWillDisappear();
-        viewControllerToPresent.viewWillAppear();
-        getView().getScene().setRoot(viewToPresent);
+        Scene scene = getView().getScene();
+        track("viewWillDisappear", this::viewWillDisappear);
+        viewControllerToPresent.track("viewWillAppear", viewControllerToPresent::viewWillAppear);
+        transition.play(scene, this, viewControllerToPresent, true,
+                () -> didPresent(scene, viewControllerToPresent, viewToPresent, completion));
+    }
+
+    private void didPresent(Scene scene, ViewController viewControllerToPresent, Parent viewToPresent, Runnable completion) {
+        StylesheetCache.apply(scene, this, viewControllerToPresent);
+        scene.setRoot(viewToPresent);
         presentedViewController = viewControllerToPresent;
         viewControllerToPresent.presentingViewController = this;
-        viewControllerToPresent.viewDidAppear();
-        viewDidDisappear();
+        viewControllerToPresent.snapshot = null;
+        viewControllerToPresent.track("viewDidAppear", viewControllerToPresent::viewDidAppear);
+        track("viewDidDisappear", this::viewDidDisappear);
 
         if (completion != null)
-            completion.run();
+            track("presentCompletion", completion);
     }
 
     public void dismiss() {
@@ -160,44 +350,101 @@ public class ViewController {
     }
 
     public void dismiss(Runnable completion) {
+        dismiss(ViewTransition.NONE, completion);
+    }
+
+    public void dismiss(ViewTransition transition, Runnable completion) {
+        Objects.requireNonNull(transition, "transition");
+        ViewTransition.finishRunning(this);
         if (getPresentedViewController() != null) {
-            doDismiss(getPresentedViewController());
-            if (completion != null)
-                completion.run();
+            List<ViewController> dismissedViewControllers = new ArrayList<>();
+            for (ViewController vc = getPresentedViewController(); vc != null; vc = vc.getPresentedViewController())
+                dismissedViewControllers.add(vc);
+            ViewController hiddenViewController = dismissedViewControllers.get(dismissedViewControllers.size() - 1);
+            Scene scene = hiddenViewController.getView().getScene();
+
+            // Without animation the events are fired per dismissed view controller, from top to bottom.
+            boolean animated = transition.isAnimated(scene);
+            if (animated)
+                willDismiss(dismissedViewControllers);
+            transition.play(scene, hiddenViewController, this, false, () -> {
+                didDismiss(scene, hiddenViewController, dismissedViewControllers, !animated);
+                if (completion != null)
+                    track("dismissCompletion", completion);
+            });
         } else if (getPresentingViewController() != null) {
-            getPresentingViewController().dismiss(completion);
+            getPresentingViewController().dismiss(transition, completion);
         }
     }
 
-    private void doDismiss(ViewController viewController) {
-        doDismiss(new LinkedList<>(Collections.singleton(viewController)));
+    private static void willDismiss(List<ViewController> dismissedViewControllers) {
+        for (int i = dismissedViewControllers.size() - 1; i >= 0; i--) {
+            ViewController disapperingViewController = dismissedViewControllers.get(i);
+            ViewController apperingViewController = disapperingViewController.getPresentingViewController();
+            disapperingViewController.track("viewWillDisappear", disapperingViewController::viewWillDisappear);
+            apperingViewController.track("viewWillAppear", apperingViewController::viewWillAppear);
+        }
     }
 
-    private Scene doDismiss(Deque<ViewController> viewControllers) {
-        Scene scene;
-        ViewController lastViewController = viewControllers.peekLast();
-        if (lastViewController.getPresentedViewController() != null) {
-            viewControllers.offerLast(lastViewController.getPresentedViewController());
-            scene = doDismiss(viewControllers);
-        } else {
-            scene = lastViewController.getView().getScene();
+    private void didDismiss(Scene scene, ViewController hiddenViewController,
+                            List<ViewController> dismissedViewControllers, boolean fireWillEvents) {
+        for (int i = dismissedViewControllers.size() - 1; i >= 0; i--) {
+            ViewController disapperingViewController = dismissedViewControllers.get(i);
+            ViewController apperingViewController = disapperingViewController.getPresentingViewController();
+            if (fireWillEvents) {
+                disapperingViewController.track("viewWillDisappear", disapperingViewController::viewWillDisappear);
+                apperingViewController.track("viewWillAppear", apperingViewController::viewWillAppear);
+            }
+
+            disapperingViewController.presentingViewController = null;
+            disapperingViewController.snapshot = null;
+            apperingViewController.presentedViewController = null;
+            apperingViewController.snapshot = null;
+            if (i == 0) {
+                StylesheetCache.apply(scene, hiddenViewController, this);
+                scene.setRoot(getView());
+            }
+
+            apperingViewController.track("viewDidAppear", apperingViewController::viewDidAppear);
+            disapperingViewController.track("viewDidDisappear", disapperingViewController::viewDidDisappear);
         }
+    }
 
-        ViewController disapperingViewController = viewControllers.pollLast();
-        ViewController apperingViewController = disapperingViewController.getPresentingViewController();
+    private Image snapshot;
 
-        disapperingViewController.viewWillDisappear();
-        apperingViewController.viewWillAppear();
+    void cacheSnapshot(Image image) {
+        snapshot = image;
+    }
 
-        disapperingViewController.presentingViewController = null;
-        apperingViewController.presentedViewController = null;
-        if (viewControllers.isEmpty())
-            scene.setRoot(getView());
+    Image getCachedSnapshot(double width, double height) {
+        if (snapshot == null || Math.abs(snapshot.getWidth() - width) >= 1 || Math.abs(snapshot.getHeight() - height) >= 1)
+            return null;
 
-        apperingViewController.viewDidAppear();
-        disapperingViewController.viewDidDisappear();
+        return snapshot;
+    }
 
-        return scene;
+    /**
+     * Discard the snapshot taken by a {@link ViewTransition} when the view was hidden.
+     * <p>Call it if the view changes while it is hidden, the next transition revealing the view takes a new
+     * snapshot.</p>
+     */
+    public void invalidateSnapshot() {
+        snapshot = null;
+    }
+
+    void track(String callback, Runnable action) {
+        FxThreadWatchdog watchdog = FxThreadWatchdog.getActive();
+        if (watchdog == null) {
+            action.run();
+            return;
+        }
+
+        FxThreadWatchdog.Activity previous = watchdog.enter(this, callback);
+        try {
+            action.run();
+        } finally {
+            watchdog.exit(previous);
+        }
     }
 
     protected void viewWillAppear() {
@@ -224,6 +471,31 @@ public class ViewController {
         return presentedViewController;
     }
 
+    void restorePresentedViewController(ViewController viewController) {
+        presentedViewController = viewController;
+        viewController.presentingViewController = this;
+    }
+
+    /**
+     * Write the state to restore this controller with the next session.
+     * <p>Keep the state small, it is saved with {@link StageController#saveSession(OutputStream)}.</p>
+     *
+     * @param out the output to write the state to.
+     * @throws IOException if the state can not be written.
+     */
+    protected void saveState(DataOutput out) throws IOException {
+    }
+
+    /**
+     * Read the state written by {@link #saveState(DataOutput)}.
+     * <p>Called before the view is loaded, the view is loaded not until the controller is visible.</p>
+     *
+     * @param in the input to read the state from.
+     * @throws IOException if the state can not be read.
+     */
+    protected void restoreState(DataInput in) throws IOException {
+    }
+
     @Override
     public String toString() {
         return "ViewController{" +
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Records which views are loaded, in order of their first load.
+ * <p>Start recording during a training run, stop it after the first navigation steps and save the manifest. On later
+ * launches a {@link ViewPreloader} reads the manifest and warms the recorded views in background.</p>
+ * <p>The manifest is a UTF-8 text file with one view per line: the controller class name, the FXML location and the
+ * base name of the resource bundle, separated by tabs.</p>
+ */
+public class ViewManifest {
+
+    private static final String NONE = "-";
+
+    private static volatile ViewManifest recording;
+
+    private final Set<Entry> entries = new LinkedHashSet<>();
+
+    public void startRecording() {
+        recording = this;
+    }
+
+    public void stopRecording() {
+        if (recording == this)
+            recording = null;
+    }
+
+    public boolean isRecording() {
+        return recording == this;
+    }
+
+    static void recordViewLoad(Class<?> controllerType, URL fxmlLocation, ResourceBundle resources) {
+        ViewManifest manifest = recording;
+        if (manifest != null)
+            manifest.add(new Entry(controllerType.getName(), fxmlLocation,
+                    resources != null ? resources.getBaseBundleName() : null));
+    }
+
+    public synchronized void add(Entry entry) {
+        entries.add(Objects.requireNonNull(entry, "entry"));
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public static ViewManifest read(InputStream in) throws IOException {
+        ViewManifest manifest = new ViewManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty())
+                continue;
+
+            String[] columns = line.split("\t", 3);
+            if (columns.length < 2)
+                throw new IOException("Invalid view manifest entry: " + line);
+
+            URL location = NONE.equals(columns[1]) ? null : new URL(columns[1]);
+            String resourcesBaseName = columns.length < 3 || NONE.equals(columns[2]) ? null : columns[2];
+            manifest.add(new Entry(columns[0], location, resourcesBaseName));
+        }
+        return manifest;
+    }
+
+    public void write(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (Entry e : getEntries()) {
+            writer.write(e.getControllerClassName());
+            writer.write('\t');
+            writer.write(e.getFXMLLocation() != null ? e.getFXMLLocation().toExternalForm() : NONE);
+            writer.write('\t');
+            writer.write(e.getResourcesBaseName() != null ? e.getResourcesBaseName() : NONE);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        return "ViewManifest{" +
+                "entries=" + getEntries() +
+                '}';
+    }
+
+    public static final class Entry {
+
+        private final String controllerClassName;
+        private final URL fxmlLocation;
+        private final String resourcesBaseName;
+
+        public Entry(String controllerClassName, URL fxmlLocation) {
+            this(controllerClassName, fxmlLocation, null);
+        }
+
+        public Entry(String controllerClassName, URL fxmlLocation, String resourcesBaseName) {
+            this.controllerClassName = Objects.requireNonNull(controllerClassName, "controllerClassName");
+            this.fxmlLocation = fxmlLocation;
+            this.resourcesBaseName = resourcesBaseName;
+        }
+
+        public String getControllerClassName() {
+            return controllerClassName;
+        }
+
+        public URL getFXMLLocation() {
+            return fxmlLocation;
+        }
+
+        public String getResourcesBaseName() {
+            return resourcesBaseName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry entry = (Entry) o;
+            return Objects.equals(controllerClassName, entry.controllerClassName) &&
+                    Objects.equals(externalForm(), entry.externalForm()) &&
+                    Objects.equals(resourcesBaseName, entry.resourcesBaseName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(controllerClassName, externalForm(), resourcesBaseName);
+        }
+
+        private String externalForm() {
+            return fxmlLocation != null ? fxmlLocation.toExternalForm() : null;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "controllerClassName='" + controllerClassName + '\'' +
+                    ", fxmlLocation=" + fxmlLocation +
+                    ", resourcesBaseName='" + resourcesBaseName + '\'' +
+                    '}';
+        }
+
+    }
+
+}
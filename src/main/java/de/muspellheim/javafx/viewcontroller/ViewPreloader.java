@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+/**
+ * Warms the views recorded in a {@link ViewManifest} on background threads.
+ * <p>For every entry the controller class and the classes imported by the FXML file are loaded, the FXML file is read
+ * into memory and the resource bundle is loaded for the current locale into the {@link Localization} cache.
+ * {@link ViewController#loadView()} uses a preloaded FXML file once instead of reading it again and releases it.</p>
+ * <p>For wildcard imports, e.g. <code>&lt;?import javafx.scene.layout.*?&gt;</code>, the classes named by the elements
+ * of the FXML file are looked up in the imported packages.</p>
+ * <p>Classes are loaded but not initialized, so static initializers still run on the JavaFX application thread.</p>
+ */
+public class ViewPreloader {
+
+    private static final Pattern IMPORT = Pattern.compile("<\\?import\\s+([\\w.$]+?)(\\.\\*)?\\s*\\?>");
+    private static final Pattern ELEMENT = Pattern.compile("<([A-Z][\\w$]*)[\\s/>]");
+
+    private static final Map<String, byte[]> templates = new ConcurrentHashMap<>();
+
+    private final ViewManifest manifest;
+    private final ClassLoader classLoader;
+
+    public ViewPreloader(ViewManifest manifest) {
+        this(manifest, Thread.currentThread().getContextClassLoader());
+    }
+
+    public ViewPreloader(ViewManifest manifest, ClassLoader classLoader) {
+        this.manifest = Objects.requireNonNull(manifest, "manifest");
+        this.classLoader = classLoader != null ? classLoader : ViewPreloader.class.getClassLoader();
+    }
+
+    static byte[] getTemplate(URL location) {
+        return location != null ? templates.get(location.toExternalForm()) : null;
+    }
+
+    static byte[] takeTemplate(URL location) {
+        return location != null ? templates.remove(location.toExternalForm()) : null;
+    }
+
+    /**
+     * Release all preloaded FXML files not used yet.
+     */
+    public static void clear() {
+        templates.clear();
+    }
+
+    /**
+     * Preload all views of the manifest on daemon threads.
+     *
+     * @return completes when all views are preloaded.
+     */
+    public CompletableFuture<Void> preload() {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), manifest.getEntries().size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ViewPreloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return preload(executor).whenComplete((result, ex) -> executor.shutdown());
+    }
+
+    public CompletableFuture<Void> preload(Executor executor) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (ViewManifest.Entry e : manifest.getEntries())
+            futures.add(CompletableFuture.runAsync(() -> preload(e), executor));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+    }
+
+    private void preload(ViewManifest.Entry entry) {
+        loadClass(entry.getControllerClassName());
+        loadBundle(entry.getResourcesBaseName());
+
+        URL location = entry.getFXMLLocation();
+        if (location == null || templates.containsKey(location.toExternalForm()))
+            return;
+
+        byte[] template;
+        try {
+            template = read(location);
+        } catch (IOException ex) {
+            // Manifest is outdated, the view loads as usual.
+            return;
+        }
+        templates.put(location.toExternalForm(), template);
+
+        String text = new String(template, StandardCharsets.UTF_8);
+        List<String> packages = new ArrayList<>();
+        Matcher imports = IMPORT.matcher(text);
+        while (imports.find()) {
+            if (imports.group(2) != null)
+                packages.add(imports.group(1));
+            else
+                loadClass(imports.group(1));
+        }
+
+        if (packages.isEmpty())
+            return;
+
+        Set<String> elements = new LinkedHashSet<>();
+        Matcher matcher = ELEMENT.matcher(text);
+        while (matcher.find())
+            elements.add(matcher.group(1));
+        for (String e : elements)
+            packages.forEach(p -> loadClass(p + '.' + e));
+    }
+
+    private void loadClass(String className) {
+        try {
+            Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            // Manifest is outdated, the class loads as usual.
+        }
+    }
+
+    private void loadBundle(String baseName) {
+        if (baseName == null)
+            return;
+
+        try {
+            Localization.getBundle(baseName, Localization.getLocale(), classLoader);
+        } catch (MissingResourceException ignored) {
+            // Manifest is outdated, the bundle loads as usual.
+        }
+    }
+
+    private static byte[] read(URL location) throws IOException {
+        try (InputStream in = location.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.animation.*;
+import javafx.scene.*;
+import javafx.scene.image.*;
+import javafx.scene.layout.*;
+import javafx.util.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Animates the change of views on {@link ViewController#present(ViewController, ViewTransition, Runnable)} and
+ * {@link ViewController#dismiss(ViewTransition, Runnable)}.
+ * <p>Only snapshots of the outgoing and incoming view are animated. The <code>viewWill*</code> events are fired before
+ * the snapshots are taken, the incoming view is installed and the <code>viewDid*</code> events are fired when the
+ * animation is finished. A present or dismiss while a transition of the same view controllers is running finishes the
+ * running transition first, transitions in other scenes keep running.</p>
+ * <p>While the views are swapped to take the snapshots, {@link LazyInclude lazy includes} defer their appear and
+ * disappear events until the swap is done, so the incoming view appears once when the animation is finished.</p>
+ * <p>The snapshot of a presenting view controller is kept while it is hidden and is reused when it is revealed again;
+ * call {@link ViewController#invalidateSnapshot()} if the view changes while hidden.</p>
+ */
+public final class ViewTransition {
+
+    public static final ViewTransition NONE = new ViewTransition(Effect.NONE, Duration.ZERO);
+
+    private static final Duration DEFAULT_DURATION = Duration.millis(250);
+
+    private static final Map<Scene, RunningTransition> runningTransitions = new HashMap<>();
+    private static final Map<Object, Runnable> deferredVisibilityChanges = new LinkedHashMap<>();
+
+    private static boolean swappingViews;
+
+    private static Consumer<TransitionMetrics> metricsListener;
+
+    private final Effect effect;
+    private final Duration duration;
+
+    private ViewTransition(Effect effect, Duration duration) {
+        this.effect = effect;
+        this.duration = Objects.requireNonNull(duration, "duration");
+    }
+
+    public static ViewTransition fade() {
+        return fade(DEFAULT_DURATION);
+    }
+
+    public static ViewTransition fade(Duration duration) {
+        return new ViewTransition(Effect.FADE, duration);
+    }
+
+    public static ViewTransition slide() {
+        return slide(DEFAULT_DURATION);
+    }
+
+    public static ViewTransition slide(Duration duration) {
+        return new ViewTransition(Effect.SLIDE, duration);
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Set a listener notified with the frame times of every finished transition.
+     *
+     * @param listener the listener or <code>null</code>.
+     */
+    public static void setMetricsListener(Consumer<TransitionMetrics> listener) {
+        metricsListener = listener;
+    }
+
+    boolean isAnimated(Scene scene) {
+        return effect != Effect.NONE && scene != null && scene.getWidth() > 0 && scene.getHeight() > 0;
+    }
+
+    /**
+     * Finish the running transition of a scene immediately, e.g. before its root is changed.
+     *
+     * @param scene the scene or <code>null</code>.
+     */
+    static void finishRunning(Scene scene) {
+        RunningTransition transition = runningTransitions.get(scene);
+        if (transition != null)
+            transition.finish();
+    }
+
+    /**
+     * Finish the running transitions of the chain of presented view controllers immediately, e.g. before the next
+     * transition starts.
+     *
+     * @param viewController a view controller of the chain.
+     */
+    static void finishRunning(ViewController viewController) {
+        if (runningTransitions.isEmpty())
+            return;
+
+        Set<ViewController> chain = new HashSet<>();
+        for (ViewController vc = viewController; vc != null; vc = vc.getPresentingViewController())
+            chain.add(vc);
+        for (ViewController vc = viewController; vc != null; vc = vc.getPresentedViewController())
+            chain.add(vc);
+        for (RunningTransition e : new ArrayList<>(runningTransitions.values())) {
+            if (chain.contains(e.outgoing) || chain.contains(e.incoming))
+                e.finish();
+        }
+    }
+
+    /**
+     * Defer a visibility change while the views are swapped to take snapshots.
+     *
+     * @param key    identifies the change, a change with the same key replaces the deferred one.
+     * @param change the change to run when the swap is done.
+     * @return <code>true</code> if the change is deferred.
+     */
+    static boolean deferWhileSwappingViews(Object key, Runnable change) {
+        if (!swappingViews)
+            return false;
+
+        deferredVisibilityChanges.put(key, change);
+        return true;
+    }
+
+    void play(Scene scene, ViewController outgoing, ViewController incoming, boolean forward, Runnable onFinished) {
+        if (!isAnimated(scene)) {
+            onFinished.run();
+            return;
+        }
+
+        double width = scene.getWidth();
+        double height = scene.getHeight();
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(scene.getFill());
+
+        Image outgoingImage = scene.getRoot().snapshot(parameters, null);
+        if (forward)
+            outgoing.cacheSnapshot(outgoingImage);
+        ImageView outgoingImageView = new ImageView(outgoingImage);
+        ImageView incomingImageView;
+        swappingViews = true;
+        try {
+            Image incomingImage = incoming.getCachedSnapshot(width, height);
+            if (incomingImage == null) {
+                Parent incomingView = incoming.getView();
+                StylesheetCache.apply(scene, outgoing, incoming);
+                scene.setRoot(incomingView);
+                incomingView.resize(width, height);
+                incomingView.applyCss();
+                incomingView.layout();
+                incomingImage = incomingView.snapshot(parameters, null);
+            }
+
+            incomingImageView = new ImageView(incomingImage);
+            scene.setRoot(new Pane(outgoingImageView, incomingImageView));
+        } finally {
+            swappingViews = false;
+            List<Runnable> changes = new ArrayList<>(deferredVisibilityChanges.values());
+            deferredVisibilityChanges.clear();
+            changes.forEach(Runnable::run);
+        }
+
+        Timeline timeline = effect == Effect.FADE
+                ? fade(outgoingImageView, incomingImageView)
+                : slide(outgoingImageView, incomingImageView, forward ? width : -width);
+        FrameRecorder recorder = new FrameRecorder((int) Math.ceil(duration.toSeconds() * 120) + 2);
+        RunningTransition transition = new RunningTransition(scene, outgoing, incoming, timeline, recorder, onFinished);
+        timeline.setOnFinished(event -> transition.finish());
+        runningTransitions.put(scene, transition);
+        recorder.start();
+        timeline.play();
+    }
+
+    private Timeline fade(ImageView outgoing, ImageView incoming) {
+        return new Timeline(
+                new KeyFrame(Duration.ZERO,
+                        new KeyValue(outgoing.opacityProperty(), 1),
+                        new KeyValue(incoming.opacityProperty(), 0)),
+                new KeyFrame(duration,
+                        new KeyValue(outgoing.opacityProperty(), 0, Interpolator.EASE_BOTH),
+                        new KeyValue(incoming.opacityProperty(), 1, Interpolator.EASE_BOTH)));
+    }
+
+    private Timeline slide(ImageView outgoing, ImageView incoming, double distance) {
+        return new Timeline(
+                new KeyFrame(Duration.ZERO,
+                        new KeyValue(outgoing.translateXProperty(), 0),
+                        new KeyValue(incoming.translateXProperty(), distance)),
+                new KeyFrame(duration,
+                        new KeyValue(outgoing.translateXProperty(), -distance, Interpolator.EASE_BOTH),
+                        new KeyValue(incoming.translateXProperty(), 0, Interpolator.EASE_BOTH)));
+    }
+
+    @Override
+    public String toString() {
+        return "ViewTransition{" +
+                "effect=" + effect +
+                ", duration=" + duration +
+                '}';
+    }
+
+    private enum Effect {
+        NONE, FADE, SLIDE
+    }
+
+    private static class RunningTransition {
+
+        private final Scene scene;
+        private final ViewController outgoing;
+        private final ViewController incoming;
+        private final Timeline timeline;
+        private final FrameRecorder recorder;
+        private final Runnable onFinished;
+
+        RunningTransition(Scene scene, ViewController outgoing, ViewController incoming, Timeline timeline,
+                          FrameRecorder recorder, Runnable onFinished) {
+            this.scene = scene;
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+            this.timeline = timeline;
+            this.recorder = recorder;
+            this.onFinished = onFinished;
+        }
+
+        void finish() {
+            if (runningTransitions.get(scene) != this)
+                return;
+
+            runningTransitions.remove(scene);
+            timeline.stop();
+            recorder.stop();
+            onFinished.run();
+            if (metricsListener != null)
+                metricsListener.accept(recorder.getMetrics());
+        }
+
+    }
+
+    private static class FrameRecorder extends AnimationTimer {
+
+        private long[] timestamps;
+        private int count;
+
+        FrameRecorder(int expectedFrames) {
+            timestamps = new long[expectedFrames];
+        }
+
+        @Override
+        public void handle(long now) {
+            if (count == timestamps.length)
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+            timestamps[count++] = now;
+        }
+
+        TransitionMetrics getMetrics() {
+            return new TransitionMetrics(timestamps, count);
+        }
+
+    }
+
+}
@@ -21,6 +21,10 @@ public class TestingViewController extends ViewController {
         this.viewEvents = viewEvents;
     }
 
+    public List<String> getViewEvents() {
+        return viewEvents;
+    }
+
     @Override
     public void viewDidLoad() {
         super.viewDidLoad();
@@ -6,13 +6,19 @@
 package de.muspellheim.javafx.viewcontroller;
 
 import javafx.fxml.*;
+import javafx.scene.*;
+import javafx.scene.control.*;
+import javafx.scene.image.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.*;
 import javafx.stage.*;
 import org.junit.*;
 import org.testfx.framework.junit.*;
+import org.testfx.util.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.junit.Assert.*;
 
@@ -233,6 +239,371 @@ public class ViewControllerTest extends ApplicationTest {
                 "green:dismissComplete"), viewEvents);
     }
 
+    @Test
+    public void testRestoreSession_loadsOnlyTopView() throws Exception {
+        ViewController root = new WithoutFxmlControllerViewController();
+        ViewController top = new WithoutFxmlControllerViewController();
+        interact(() -> stageController.setRootViewController(root));
+        interact(() -> root.present(top));
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        stageController.saveSession(snapshot);
+
+        interact(() -> {
+            try {
+                stageController.restoreSession(new ByteArrayInputStream(snapshot.toByteArray()));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        ViewController restoredRoot = stageController.getRootViewController();
+        ViewController restoredTop = restoredRoot.getPresentedViewController();
+        assertNotSame(root, restoredRoot);
+        assertTrue(restoredRoot instanceof WithoutFxmlControllerViewController);
+        assertTrue(restoredTop instanceof WithoutFxmlControllerViewController);
+        assertSame(restoredRoot, restoredTop.getPresentingViewController());
+        assertFalse(restoredRoot.isViewLoaded());
+        assertSame(restoredTop.getView(), stageController.getStage().getScene().getRoot());
+
+        interact(() -> restoredTop.dismiss());
+        assertSame(restoredRoot.getView(), stageController.getStage().getScene().getRoot());
+    }
+
+    @Test
+    public void testRestoreSession_fireViewEventsOfShowingStage() throws Exception {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        SessionSnapshot.write(new WithoutFxmlControllerViewController(), snapshot);
+        interact(() -> stageController.setRootViewController(green));
+        interact(() -> stageController.show());
+        viewEvents.clear();
+
+        interact(() -> {
+            try {
+                stageController.restoreSession(new ByteArrayInputStream(snapshot.toByteArray()));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        assertEquals(Arrays.asList("green:viewWillDisappear", "green:viewDidDisappear"), viewEvents);
+        assertSame(stageController.getRootViewController().getView(), stageController.getStage().getScene().getRoot());
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testRestoreSession_rejectsInvalidStateSize() throws Exception {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(snapshot);
+        data.writeInt(0x56435353);
+        data.writeShort(1);
+        data.writeInt(1);
+        data.writeUTF(WithoutFxmlControllerViewController.class.getName());
+        data.writeInt(-1);
+
+        SessionSnapshot.read(new ByteArrayInputStream(snapshot.toByteArray()), getClass().getClassLoader());
+    }
+
+    @Test
+    public void testChangeLocale_updatesLocalizedTexts() {
+        Locale defaultLocale = Localization.getLocale();
+        try {
+            Localization.setLocale(Locale.ENGLISH);
+            ViewController viewController = new ViewController(getClass().getResource("Localized.fxml"),
+                    Localization.getBundle("de.muspellheim.javafx.viewcontroller.Localized"));
+            Label label = (Label) ((StackPane) viewController.getView()).getChildren().get(0);
+            assertEquals("Hello World!", label.getText());
+
+            interact(() -> Localization.setLocale(Locale.GERMAN));
+            assertEquals("Hallo Welt!", label.getText());
+            assertEquals(Locale.GERMAN, viewController.getResources().getLocale());
+        } finally {
+            interact(() -> Localization.setLocale(defaultLocale));
+        }
+    }
+
+    @Test
+    public void testChangeLocale_updatesTextsOfSameValue() {
+        Locale defaultLocale = Localization.getLocale();
+        try {
+            Localization.setLocale(Locale.ENGLISH);
+            ViewController viewController = new ViewController(getClass().getResource("Localized.fxml"),
+                    Localization.getBundle("de.muspellheim.javafx.viewcontroller.Localized"));
+            List<Node> children = ((StackPane) viewController.getView()).getChildren();
+            assertEquals("Open", ((Button) children.get(1)).getText());
+            assertEquals("Open", ((Button) children.get(2)).getText());
+            assertEquals("Settings", ((Label) children.get(3)).getText());
+
+            interact(() -> Localization.setLocale(Locale.GERMAN));
+            assertEquals("\u00d6ffnen", ((Button) children.get(1)).getText());
+            assertEquals("Datei \u00f6ffnen", ((Button) children.get(2)).getText());
+            assertEquals("Einstellungen", ((Label) children.get(3)).getText());
+            assertEquals("Settings", ((Label) children.get(4)).getText());
+        } finally {
+            interact(() -> Localization.setLocale(defaultLocale));
+        }
+    }
+
+    @Test
+    public void testChangeLocale_keepsBoundAndChangedTexts() {
+        Locale defaultLocale = Localization.getLocale();
+        try {
+            Localization.setLocale(Locale.ENGLISH);
+            ViewController viewController = new ViewController(getClass().getResource("Localized.fxml"),
+                    Localization.getBundle("de.muspellheim.javafx.viewcontroller.Localized")) {
+                @Override
+                protected void viewDidLoad() {
+                    ((Label) ((StackPane) getView()).getChildren().get(0)).textProperty().bind(titleProperty());
+                }
+            };
+            viewController.setTitle("Title");
+            List<Node> children = ((StackPane) viewController.getView()).getChildren();
+            ((Button) children.get(1)).setText("Changed");
+
+            interact(() -> Localization.setLocale(Locale.GERMAN));
+            assertEquals("Title", ((Label) children.get(0)).getText());
+            assertEquals("Changed", ((Button) children.get(1)).getText());
+            assertEquals("Datei \u00f6ffnen", ((Button) children.get(2)).getText());
+        } finally {
+            interact(() -> Localization.setLocale(defaultLocale));
+        }
+    }
+
+    @Test
+    public void testLazyInclude_loadWhenVisible() {
+        ViewController viewController = new ViewController(getClass().getResource("WithLazyInclude.fxml"));
+        interact(() -> stageController.setRootViewController(viewController));
+        interact(() -> stageController.getStage().show());
+        LazyInclude include = (LazyInclude) viewController.getView().lookup(".lazy-include");
+        assertFalse(include.isLoaded());
+        assertNull(include.getController());
+
+        interact(() -> include.setVisible(true));
+        assertTrue(include.isLoaded());
+        assertTrue(include.getController() instanceof WithFxmlControllerViewController);
+        assertTrue(include.getChildren().get(0) instanceof StackPane);
+
+        interact(() -> include.setVisible(false));
+        WithFxmlControllerViewController included = (WithFxmlControllerViewController) include.getController();
+        assertEquals(Arrays.asList(
+                "With FXML Controller:viewDidLoad",
+                "With FXML Controller:viewWillAppear",
+                "With FXML Controller:viewDidAppear",
+                "With FXML Controller:viewWillDisappear",
+                "With FXML Controller:viewDidDisappear"), included.getViewEvents());
+    }
+
+    @Test
+    public void testLazyInclude_reportInvalidSource() {
+        ViewController viewController = new ViewController(getClass().getResource("WithLazyInclude.fxml"));
+        interact(() -> stageController.setRootViewController(viewController));
+        interact(() -> stageController.getStage().show());
+        LazyInclude include = (LazyInclude) viewController.getView().lookup(".lazy-include");
+
+        interact(() -> include.setSource("Details.fxml"));
+        interact(() -> include.setVisible(true));
+        assertFalse(include.isLoaded());
+        assertTrue(include.getLoadError() instanceof IllegalStateException);
+
+        interact(() -> include.setSource(getClass().getResource("WithFxmlController.fxml").toExternalForm()));
+        assertTrue(include.isLoaded());
+        assertNull(include.getLoadError());
+    }
+
+    @Test
+    public void testPresentInWindow_reuseStage() {
+        interact(() -> stageController.setRootViewController(green));
+        interact(() -> stageController.show());
+        StageController[] windows = new StageController[2];
+
+        interact(() -> windows[0] = stageController.presentInWindow(blue));
+        assertSame(blue.getView(), windows[0].getStage().getScene().getRoot());
+        assertEquals("blue", windows[0].getStage().getTitle());
+        interact(() -> windows[0].close());
+
+        interact(() -> windows[1] = stageController.presentInWindow(yellow));
+        assertSame(windows[0].getStage(), windows[1].getStage());
+        assertSame(yellow.getView(), windows[1].getStage().getScene().getRoot());
+        assertEquals("yellow", windows[1].getStage().getTitle());
+        try {
+            windows[0].show();
+            fail("Released stage controller must not show the reused stage.");
+        } catch (IllegalStateException expected) {
+        }
+        interact(() -> windows[1].close());
+    }
+
+    @Test
+    public void testPresentAndDismissWithTransition() throws Exception {
+        List<TransitionMetrics> metrics = new CopyOnWriteArrayList<>();
+        ViewTransition.setMetricsListener(metrics::add);
+        StylesheetCache.resetMetrics();
+        try {
+            interact(() -> stageController.getStage().setWidth(200));
+            interact(() -> stageController.getStage().setHeight(100));
+            interact(() -> stageController.setRootViewController(green));
+            interact(() -> stageController.show());
+
+            CountDownLatch presented = new CountDownLatch(1);
+            interact(() -> green.present(blue, ViewTransition.slide(javafx.util.Duration.millis(50)), presented::countDown));
+            assertTrue(presented.await(5, TimeUnit.SECONDS));
+            WaitForAsyncUtils.waitForFxEvents();
+            assertViewControllerHierarchyIsGreenBlue();
+            Scene scene = stageController.getStage().getScene();
+            assertNotNull(green.getCachedSnapshot(scene.getWidth(), scene.getHeight()));
+            interact(() -> green.getStylesheets().add(getClass().getResource("Green.css").toExternalForm()));
+            assertNull(green.getCachedSnapshot(scene.getWidth(), scene.getHeight()));
+
+            CountDownLatch dismissed = new CountDownLatch(1);
+            interact(() -> blue.dismiss(ViewTransition.fade(javafx.util.Duration.millis(50)), dismissed::countDown));
+            assertTrue(dismissed.await(5, TimeUnit.SECONDS));
+            WaitForAsyncUtils.waitForFxEvents();
+            assertViewControllerHierarchyIsGreen();
+            assertEquals(2, metrics.size());
+            assertEquals(3, StylesheetCache.getMetrics().getViewChanges());
+        } finally {
+            ViewTransition.setMetricsListener(null);
+        }
+    }
+
+    @Test
+    public void testDismissDuringTransition_finishRunningTransition() {
+        interact(() -> stageController.getStage().setWidth(200));
+        interact(() -> stageController.getStage().setHeight(100));
+        interact(() -> stageController.setRootViewController(green));
+        interact(() -> stageController.show());
+
+        interact(() -> green.present(blue, ViewTransition.slide(javafx.util.Duration.seconds(10)), null));
+        assertTrue(viewEvents.contains("blue:viewWillAppear"));
+        assertFalse(viewEvents.contains("blue:viewDidAppear"));
+
+        interact(() -> blue.dismiss());
+        assertViewControllerHierarchyIsGreen();
+        assertTrue(viewEvents.contains("blue:viewDidAppear"));
+    }
+
+    @Test
+    public void testWatchdog_attributeStallToCallback() {
+        ViewController slow = new ColoredViewController("slow", Color.LIGHTGRAY, viewEvents) {
+
+            @Override
+            public void viewDidLoad() {
+                super.viewDidLoad();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        };
+        FxThreadWatchdog watchdog = new FxThreadWatchdog(100);
+        watchdog.start();
+        try {
+            interact(() -> stageController.setRootViewController(green));
+            interact(() -> stageController.show());
+            interact(() -> green.present(slow));
+            WaitForAsyncUtils.sleep(300, TimeUnit.MILLISECONDS);
+            WaitForAsyncUtils.waitForFxEvents();
+
+            FxThreadWatchdog.StallStatistics stall = watchdog.getStatistics().stream()
+                    .filter(s -> "viewDidLoad".equals(s.getCallback()))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            assertEquals(slow.getClass().getName(), stall.getControllerClassName());
+            assertEquals("slow", stall.getLastTitle());
+            assertTrue(stall.getMaxTime() >= 100);
+            assertEquals(200, stall.getBucketBounds()[0]);
+            assertFalse(watchdog.getReport().contains("'null'"));
+        } finally {
+            watchdog.stop();
+        }
+    }
+
+    @Test
+    public void testWhenViewReady_shareDecodedImages() throws Exception {
+        ViewController first = new ViewController(getClass().getResource("WithImage.fxml"));
+        ViewController second = new ViewController(getClass().getResource("WithImage.fxml"));
+        CountDownLatch ready = new CountDownLatch(2);
+
+        interact(() -> first.whenViewReady(ready::countDown));
+        interact(() -> second.whenViewReady(ready::countDown));
+        assertTrue(ready.await(5, TimeUnit.SECONDS));
+
+        Image firstImage = ((ImageView) ((StackPane) first.getView()).getChildren().get(0)).getImage();
+        Image secondImage = ((ImageView) ((StackPane) second.getView()).getChildren().get(0)).getImage();
+        assertSame(firstImage, secondImage);
+        assertEquals(16, firstImage.getWidth(), 0);
+        assertTrue(first.isViewReady());
+    }
+
+    @Test
+    public void testImageCache_loadImageNowWithoutBackgroundLoading() {
+        ImageCache cache = new ImageCache();
+        String url = getClass().getResource("Image.png").toExternalForm();
+
+        Image image = cache.get(url, 0, 0, false, true, false);
+        assertEquals(1, image.getProgress(), 0);
+        assertEquals(16, image.getWidth(), 0);
+        assertSame(image, cache.get(url, 0, 0, false, true, false));
+    }
+
+    @Test
+    public void testImageCache_evictWhenImageIsLoaded() throws Exception {
+        ImageCache cache = new ImageCache(1);
+        String url = getClass().getResource("Image.png").toExternalForm();
+
+        Image image = cache.get(url);
+        WaitForAsyncUtils.waitFor(5, TimeUnit.SECONDS, () -> image.getProgress() >= 1);
+        WaitForAsyncUtils.waitForFxEvents();
+        assertEquals(0, cache.getImageCount());
+    }
+
+    @Test
+    public void testWhenViewReady_withFxmlController() throws Exception {
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("WithFxmlController.fxml"));
+        loader.load();
+        ViewController viewController = loader.getController();
+        CountDownLatch ready = new CountDownLatch(1);
+
+        interact(() -> viewController.whenViewReady(ready::countDown));
+        assertTrue(ready.await(5, TimeUnit.SECONDS));
+        assertTrue(viewController.isViewReady());
+    }
+
+    @Test
+    public void testStylesheets_attachStylesheetsOfVisibleViewController() {
+        ViewController styledGreen = new ColoredViewController("green", Color.LIGHTGREEN, viewEvents) {
+            {
+                addStylesheet("Green.css");
+            }
+        };
+        ViewController styledBlue = new ColoredViewController("blue", Color.LIGHTBLUE, viewEvents) {
+            {
+                addStylesheet("Blue.css");
+            }
+        };
+        String greenCss = getClass().getResource("Green.css").toExternalForm();
+        String blueCss = getClass().getResource("Blue.css").toExternalForm();
+        StylesheetCache.resetMetrics();
+
+        interact(() -> stageController.setRootViewController(styledGreen));
+        assertEquals(Collections.singletonList(greenCss), stageController.getStage().getScene().getStylesheets());
+
+        interact(() -> styledGreen.present(styledBlue));
+        assertEquals(Collections.singletonList(blueCss), stageController.getStage().getScene().getStylesheets());
+
+        interact(() -> styledBlue.dismiss());
+        assertEquals(Collections.singletonList(greenCss), stageController.getStage().getScene().getStylesheets());
+
+        interact(() -> styledGreen.getStylesheets().add(blueCss));
+        assertEquals(Arrays.asList(greenCss, blueCss), stageController.getStage().getScene().getStylesheets());
+
+        StylesheetCache.StylesheetMetrics metrics = StylesheetCache.getMetrics();
+        assertEquals(3, metrics.getViewChanges());
+        assertEquals(4, metrics.getStylesheetChanges());
+        assertEquals(4, metrics.getAttachedStylesheets());
+        assertEquals(2, metrics.getDetachedStylesheets());
+    }
+
     @Test
     public void testToString() {
         ViewController viewController = new TestingViewController(viewEvents);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 Falko Schumann
+ * Released under the terms of the MIT License.
+ */
+
+package de.muspellheim.javafx.viewcontroller;
+
+import javafx.stage.*;
+import org.junit.*;
+import org.testfx.framework.junit.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.Assert.*;
+
+public class ViewManifestTest extends ApplicationTest {
+
+    @Override
+    public void start(Stage stage) {
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        URL location = getClass().getResource("WithoutFxmlController.fxml");
+        ViewManifest manifest = new ViewManifest();
+        manifest.add(new ViewManifest.Entry(WithoutFxmlControllerViewController.class.getName(), location));
+        manifest.add(new ViewManifest.Entry(ColoredViewController.class.getName(), null));
+        manifest.add(new ViewManifest.Entry(ViewController.class.getName(), getClass().getResource("Localized.fxml"),
+                "de.muspellheim.javafx.viewcontroller.Localized"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        ViewManifest readManifest = ViewManifest.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(manifest.getEntries(), readManifest.getEntries());
+    }
+
+    @Test
+    public void testRecording_recordsFirstLoadOnly() {
+        ViewManifest manifest = new ViewManifest();
+        manifest.startRecording();
+        try {
+            new WithoutFxmlControllerViewController().getView();
+            new WithoutFxmlControllerViewController().getView();
+        } finally {
+            manifest.stopRecording();
+        }
+
+        assertEquals(Collections.singletonList(new ViewManifest.Entry(
+                WithoutFxmlControllerViewController.class.getName(),
+                getClass().getResource("WithoutFxmlController.fxml"))), manifest.getEntries());
+        assertFalse(manifest.isRecording());
+    }
+
+    @Test
+    public void testRecording_recordsResourcesBaseName() {
+        ResourceBundle resources = ResourceBundle.getBundle("de.muspellheim.javafx.viewcontroller.Localized", Locale.ENGLISH);
+        ViewManifest manifest = new ViewManifest();
+        manifest.startRecording();
+        try {
+            new ViewController(getClass().getResource("Localized.fxml"), resources).getView();
+        } finally {
+            manifest.stopRecording();
+        }
+
+        assertEquals(Collections.singletonList(new ViewManifest.Entry(ViewController.class.getName(),
+                getClass().getResource("Localized.fxml"), "de.muspellheim.javafx.viewcontroller.Localized")),
+                manifest.getEntries());
+    }
+
+    @Test
+    public void testPreload_loadViewFromPreloadedTemplate() throws Exception {
+        Path file = Files.createTempFile("Preloaded", ".fxml");
+        try {
+            Files.copy(getClass().getResourceAsStream("WithoutFxmlController.fxml"), file,
+                    StandardCopyOption.REPLACE_EXISTING);
+            URL location = file.toUri().toURL();
+            ViewManifest manifest = new ViewManifest();
+            manifest.add(new ViewManifest.Entry(ViewController.class.getName(), location));
+
+            new ViewPreloader(manifest).preload().get();
+            Files.delete(file);
+
+            assertNotNull(ViewPreloader.getTemplate(location));
+            assertNotNull(new ViewController(location).getView());
+            assertNull(ViewPreloader.getTemplate(location));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testPreload_warmResources() throws Exception {
+        Locale defaultLocale = Localization.getLocale();
+        try {
+            interact(() -> Localization.setLocale(Locale.ENGLISH));
+            Localization.clearCache();
+            AtomicInteger bundleReads = new AtomicInteger();
+            ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+                @Override
+                public URL getResource(String name) {
+                    if (name.endsWith(".properties"))
+                        bundleReads.incrementAndGet();
+                    return super.getResource(name);
+                }
+            };
+            ViewManifest manifest = new ViewManifest();
+            manifest.add(new ViewManifest.Entry(ViewController.class.getName(), null,
+                    "de.muspellheim.javafx.viewcontroller.Localized"));
+
+            new ViewPreloader(manifest, classLoader).preload().get();
+            int preloadReads = bundleReads.get();
+
+            assertTrue(preloadReads > 0);
+            assertEquals("Hello World!", Localization.getBundle("de.muspellheim.javafx.viewcontroller.Localized",
+                    Locale.ENGLISH, classLoader).getString("greeting"));
+            assertEquals(preloadReads, bundleReads.get());
+        } finally {
+            interact(() -> Localization.setLocale(defaultLocale));
+            Localization.clearCache();
+        }
+    }
+
+}
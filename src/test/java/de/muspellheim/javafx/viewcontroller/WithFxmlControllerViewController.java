@@ -5,9 +5,12 @@
 
 package de.muspellheim.javafx.viewcontroller;
 
-public class WithFxmlControllerViewController extends ViewController {
+import java.util.*;
+
+public class WithFxmlControllerViewController extends TestingViewController {
 
     public WithFxmlControllerViewController() {
+        super(new ArrayList<>());
         setTitle("With FXML Controller");
     }
 